@@ -0,0 +1,239 @@
+package App.bench;
+
+import App.Category;
+import App.DiscountCode;
+import App.Money;
+import App.Product;
+import App.SchemaMigrator;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Embedded H2 database in MySQL mode with the app's real schema. It is built
+ * from sql/create_tables.sql and sql/sample_data.sql and then padded with
+ * synthetic products, discount codes and invoices up to the requested scale.
+ * Generated data uses a fixed seed so runs compare like for like.
+ */
+public final class BenchmarkDatabase {
+    private static final String[] FLAVOURS = {
+            "Vanilla", "Caramel", "Hazelnut", "Mocha", "Oat", "Almond", "Coconut", "Honey",
+            "Cinnamon", "Maple", "Pistachio", "Toffee", "Ginger", "Lavender", "Rose", "Chai" };
+    private static final String[] BASES = {
+            "Latte", "Espresso", "Cappuccino", "Americano", "Flat White", "Macchiato",
+            "Cold Brew", "Matcha", "Brownie", "Cheesecake", "Croissant", "Muffin" };
+    private static final int BATCH_SIZE = 1_000;
+    private static final int HISTORY_DAYS = 730;
+
+    private BenchmarkDatabase() {
+    }
+
+    /** Opens a fresh private in-memory database with the schema and sample data loaded. */
+    public static Connection open() throws SQLException {
+        return open(newUrl());
+    }
+
+    /** URL of a new, empty in-memory database that stays alive while any connection to it is open. */
+    public static String newUrl() {
+        return "jdbc:h2:mem:bench-" + UUID.randomUUID() + ";MODE=MySQL;DB_CLOSE_DELAY=0";
+    }
+
+    /** Opens {@code url} and loads the schema and sample data into it. */
+    public static Connection open(String url) throws SQLException {
+        Connection connection = DriverManager.getConnection(url);
+        runScript(connection, "create_tables.sql");
+        runScript(connection, "sample_data.sql");
+        return connection;
+    }
+
+    /** Adds synthetic products until the catalog holds {@code total} products. */
+    public static void seedProducts(Connection connection, int total) throws SQLException {
+        int existing = count(connection, "products");
+        Random random = new Random(42);
+        String sql = "INSERT INTO products (name, image_name, price, stock, category) VALUES (?, ?, ?, ?, ?)";
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            for (int i = existing; i < total; i++) {
+                String base = BASES[random.nextInt(BASES.length)];
+                ps.setString(1, FLAVOURS[random.nextInt(FLAVOURS.length)] + " " + base + " " + i);
+                ps.setString(2, "default.png");
+                ps.setBigDecimal(3, Money.toDecimal(100 + random.nextInt(900)));
+                ps.setInt(4, 1_000_000);
+                ps.setString(5, (base.equals("Brownie") || base.equals("Cheesecake")
+                        || base.equals("Croissant") || base.equals("Muffin")) ? "DESSERT" : "DRINK");
+                ps.addBatch();
+                if ((i - existing + 1) % BATCH_SIZE == 0) {
+                    ps.executeBatch();
+                }
+            }
+            ps.executeBatch();
+        }
+        // Sample products start with two-digit stock; keep checkout benchmarks from running out
+        try (Statement st = connection.createStatement()) {
+            st.executeUpdate("UPDATE products SET stock = 1000000");
+        }
+    }
+
+    /** Adds synthetic discount codes until {@code total} codes exist. */
+    public static void seedDiscountCodes(Connection connection, int total) throws SQLException {
+        int existing = count(connection, "discount_codes");
+        String sql = "INSERT INTO discount_codes (code, discount_percent, active) VALUES (?, ?, ?)";
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            for (int i = existing; i < total; i++) {
+                ps.setString(1, String.format("CODE%06d", i));
+                ps.setBigDecimal(2, BigDecimal.valueOf(i % 50, 2));
+                ps.setBoolean(3, i % 10 != 0);
+                ps.addBatch();
+                if ((i - existing + 1) % BATCH_SIZE == 0) {
+                    ps.executeBatch();
+                }
+            }
+            ps.executeBatch();
+        }
+    }
+
+    /**
+     * Writes {@code total} invoices of 1 to 4 lines spread over the last two
+     * years, then builds the sales rollups with sql/backfill_sales_rollup.sql.
+     */
+    public static void seedInvoices(Connection connection, int total) throws SQLException {
+        List<Product> products = readProducts(connection);
+        Random random = new Random(7);
+        LocalDateTime now = LocalDateTime.now();
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try (PreparedStatement invoice = connection.prepareStatement(
+                "INSERT INTO invoices (id, order_id, date_time, total) VALUES (?, ?, ?, ?)");
+                PreparedStatement item = connection.prepareStatement(
+                        "INSERT INTO invoice_items (invoice_id, product_id, product_name, quantity, line_price) " +
+                        "VALUES (?, ?, ?, ?, ?)")) {
+            int firstId = maxId(connection, "invoices") + 1;
+            for (int n = 0; n < total; n++) {
+                int id = firstId + n;
+                long invoiceTotal = 0;
+                int lines = 1 + random.nextInt(4);
+                for (int l = 0; l < lines; l++) {
+                    Product p = products.get(random.nextInt(products.size()));
+                    int quantity = 1 + random.nextInt(3);
+                    String name = p.getCategory() == Category.DRINK
+                            ? p.getName() + (random.nextBoolean() ? " (Hot)" : " (Cold)")
+                            : p.getName();
+                    item.setInt(1, id);
+                    item.setInt(2, p.getId());
+                    item.setString(3, name);
+                    item.setInt(4, quantity);
+                    item.setBigDecimal(5, Money.toDecimal(p.getPriceCents() * quantity));
+                    item.addBatch();
+                    invoiceTotal += p.getPriceCents() * quantity;
+                }
+                invoice.setInt(1, id);
+                invoice.setString(2, String.format("B%011d", id));
+                invoice.setTimestamp(3, Timestamp.valueOf(now.minusMinutes(random.nextInt(HISTORY_DAYS * 24 * 60))));
+                invoice.setBigDecimal(4, Money.toDecimal(invoiceTotal));
+                invoice.addBatch();
+                if ((n + 1) % BATCH_SIZE == 0) {
+                    invoice.executeBatch();
+                    item.executeBatch();
+                }
+            }
+            invoice.executeBatch();
+            item.executeBatch();
+            connection.commit();
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+        try (Statement st = connection.createStatement()) {
+            st.execute("ALTER TABLE invoices ALTER COLUMN id RESTART WITH " + (maxId(connection, "invoices") + 1));
+        }
+        runScript(connection, "backfill_sales_rollup.sql");
+    }
+
+    /** Same columns and mapping as the app's catalog load. */
+    public static List<Product> readProducts(Connection connection) throws SQLException {
+        List<Product> products = new ArrayList<>();
+        try (Statement st = connection.createStatement();
+                ResultSet rs = st.executeQuery("SELECT id, name, image_name, price, stock, category FROM products")) {
+            while (rs.next()) {
+                products.add(new Product(rs.getInt("id"), rs.getString("name"), rs.getString("image_name"),
+                        Money.fromDecimal(rs.getBigDecimal("price")), rs.getInt("stock"), Category.fromColumn(rs.getString("category"))));
+            }
+        }
+        return products;
+    }
+
+    /** Same columns and mapping as the app's discount code load. */
+    public static List<DiscountCode> readDiscountCodes(Connection connection) throws SQLException {
+        List<DiscountCode> codes = new ArrayList<>();
+        try (Statement st = connection.createStatement();
+                ResultSet rs = st.executeQuery(
+                        "SELECT id, code, discount_percent, usage_count, active FROM discount_codes")) {
+            while (rs.next()) {
+                codes.add(new DiscountCode(rs.getInt("id"), rs.getString("code"),
+                        Money.basisPoints(rs.getBigDecimal("discount_percent")), rs.getInt("usage_count"), rs.getBoolean("active")));
+            }
+        }
+        return codes;
+    }
+
+    private static int count(Connection connection, String table) throws SQLException {
+        try (Statement st = connection.createStatement();
+                ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM " + table)) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    private static int maxId(Connection connection, String table) throws SQLException {
+        try (Statement st = connection.createStatement();
+                ResultSet rs = st.executeQuery("SELECT COALESCE(MAX(id), 0) FROM " + table)) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    private static void runScript(Connection connection, String name) throws SQLException {
+        String script;
+        try {
+            script = Files.readString(sqlDir().resolve(name), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new SQLException("Cannot read " + name + " from " + sqlDir().toAbsolutePath(), e);
+        }
+        try (Statement st = connection.createStatement()) {
+            for (String sql : SchemaMigrator.splitStatements(script)) {
+                // H2 runs the script on one connection anyway; MySQL transaction syntax differs
+                if (sql.equalsIgnoreCase("START TRANSACTION") || sql.equalsIgnoreCase("COMMIT"))
+                    continue;
+                st.execute(sql);
+            }
+        }
+    }
+
+    /** The repository's sql/ folder: -Dbench.sqlDir, or found by walking up from the working directory. */
+    static Path sqlDir() {
+        String configured = System.getProperty("bench.sqlDir");
+        if (configured != null) {
+            return Paths.get(configured);
+        }
+        for (Path dir = Paths.get("").toAbsolutePath(); dir != null; dir = dir.getParent()) {
+            if (Files.isRegularFile(dir.resolve("sql/create_tables.sql"))) {
+                return dir.resolve("sql");
+            }
+        }
+        return Paths.get("sql");
+    }
+}
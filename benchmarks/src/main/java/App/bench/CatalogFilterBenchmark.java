@@ -0,0 +1,85 @@
+package App.bench;
+
+import App.CatalogIndex;
+import App.Category;
+import App.Product;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/** The filtering behind refreshProductGrid: CatalogIndex queries on a catalog read from the database. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CatalogFilterBenchmark {
+    @Param({ "100", "10000", "50000" })
+    public int products;
+
+    private List<Product> catalog;
+    private CatalogIndex index;
+
+    @Setup
+    public void setUp() throws Exception {
+        try (Connection connection = BenchmarkDatabase.open()) {
+            BenchmarkDatabase.seedProducts(connection, products);
+            catalog = BenchmarkDatabase.readProducts(connection);
+        }
+        index = new CatalogIndex(catalog);
+    }
+
+    @Benchmark
+    public int[] allProducts() {
+        return index.query(null, "", 0, Long.MAX_VALUE, true);
+    }
+
+    @Benchmark
+    public int[] categoryOnly() {
+        return index.query(Category.DRINK, "", 0, Long.MAX_VALUE, true);
+    }
+
+    @Benchmark
+    public int[] nameSearch() {
+        return index.query(null, "latte", 0, Long.MAX_VALUE, true);
+    }
+
+    @Benchmark
+    public int[] nameCategoryAndPrice() {
+        return index.query(Category.DRINK, "oat", 300, 650, true);
+    }
+
+    @Benchmark
+    public int[] priceRangeOnly() {
+        return index.query(null, "", 200, 400, true);
+    }
+
+    @Benchmark
+    public int[] fuzzyTypo() {
+        return index.query(null, "capucino", 0, Long.MAX_VALUE, true);
+    }
+
+    @Benchmark
+    public List<Product> queryAndResolve() {
+        return index.getProducts(index.query(null, "mocha", 0, Long.MAX_VALUE, true));
+    }
+
+    @Benchmark
+    public CatalogIndex buildIndex() {
+        return new CatalogIndex(catalog);
+    }
+}
@@ -0,0 +1,77 @@
+package App.bench;
+
+import App.CheckoutWriter;
+import App.OrderLine;
+import App.Product;
+import App.Variant;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/** The completeOrder persistence path: one CheckoutWriter transaction per order. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CheckoutBenchmark {
+    @Param({ "1", "5", "20" })
+    public int linesPerOrder;
+
+    @Param({ "1000", "100000" })
+    public int existingInvoices;
+
+    private Connection connection;
+    private CheckoutWriter writer;
+    private List<OrderLine> lines;
+    private Map<Integer, Integer> stockDecrements;
+    private long totalCents;
+    private long orderSeq;
+
+    @Setup
+    public void setUp() throws Exception {
+        connection = BenchmarkDatabase.open();
+        BenchmarkDatabase.seedProducts(connection, 500);
+        BenchmarkDatabase.seedInvoices(connection, existingInvoices);
+        writer = new CheckoutWriter(connection);
+
+        List<Product> products = BenchmarkDatabase.readProducts(connection);
+        lines = new ArrayList<>(linesPerOrder);
+        stockDecrements = new LinkedHashMap<>();
+        for (int i = 0; i < linesPerOrder; i++) {
+            Product p = products.get(i * 7 % products.size());
+            lines.add(new OrderLine(p.getId(), p.getName(), i % 2 == 0 ? Variant.HOT : Variant.COLD, 1, p.getPriceCents()));
+            stockDecrements.merge(p.getId(), 1, Integer::sum);
+            totalCents += p.getPriceCents();
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        connection.close();
+    }
+
+    @Benchmark
+    public int completeOrder() throws SQLException {
+        return writer.write(String.format("C%011d", ++orderSeq), totalCents, lines, stockDecrements);
+    }
+}
@@ -0,0 +1,59 @@
+package App.bench;
+
+import App.DiscountCode;
+import App.DiscountCodeIndex;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.util.concurrent.TimeUnit;
+
+/** Discount code lookup as typed by a cashier, against codes loaded from the database. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DiscountLookupBenchmark {
+    @Param({ "10", "1000", "100000" })
+    public int codes;
+
+    private DiscountCodeIndex index;
+    private String lastCode;
+
+    @Setup
+    public void setUp() throws Exception {
+        index = new DiscountCodeIndex();
+        try (Connection connection = BenchmarkDatabase.open()) {
+            BenchmarkDatabase.seedDiscountCodes(connection, codes);
+            index.replaceAll(BenchmarkDatabase.readDiscountCodes(connection));
+        }
+        lastCode = String.format(" code%06d ", codes - 1).toLowerCase();
+    }
+
+    @Benchmark
+    public DiscountCode hit() {
+        return index.find("WELCOME10");
+    }
+
+    @Benchmark
+    public DiscountCode hitNeedsNormalizing() {
+        return index.find(lastCode);
+    }
+
+    @Benchmark
+    public DiscountCode miss() {
+        return index.find("NOSUCHCODE");
+    }
+}
@@ -0,0 +1,80 @@
+package App.bench;
+
+import App.CompletedInvoice;
+import App.InvoiceHistoryReader;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Invoice history loading, which replaced loadAllInvoicesFromDB: the first
+ * page with items, header-only pages for the list view, and a page deep in
+ * the history.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InvoiceHistoryBenchmark {
+    @Param({ "1000", "100000" })
+    public int invoices;
+
+    @Param({ "100" })
+    public int pageSize;
+
+    private Connection connection;
+    private InvoiceHistoryReader reader;
+    private int middleId;
+
+    @Setup
+    public void setUp() throws Exception {
+        connection = BenchmarkDatabase.open();
+        BenchmarkDatabase.seedProducts(connection, 200);
+        BenchmarkDatabase.seedInvoices(connection, invoices);
+        reader = new InvoiceHistoryReader(connection);
+        try (Statement st = connection.createStatement();
+                ResultSet rs = st.executeQuery("SELECT MAX(id) / 2 FROM invoices")) {
+            rs.next();
+            middleId = rs.getInt(1);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        connection.close();
+    }
+
+    @Benchmark
+    public List<CompletedInvoice> firstPageWithItems() throws SQLException {
+        return reader.loadPage(Integer.MAX_VALUE, pageSize);
+    }
+
+    @Benchmark
+    public List<CompletedInvoice> firstPageHeaders() throws SQLException {
+        return reader.loadHeaders(Integer.MAX_VALUE, pageSize);
+    }
+
+    @Benchmark
+    public List<CompletedInvoice> middlePageWithItems() throws SQLException {
+        return reader.loadPage(middleId, pageSize);
+    }
+}
@@ -0,0 +1,495 @@
+package App.bench;
+
+import App.Cart;
+import App.CatalogIndex;
+import App.Category;
+import App.CheckoutWriter;
+import App.ConnectionPool;
+import App.DataAccess;
+import App.DiscountCodeIndex;
+import App.OrderLine;
+import App.OrderService;
+import App.Product;
+import App.Receipt;
+import App.Variant;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Load generator for several registers selling against one database. Each
+ * simulated terminal is a separate app instance: its own catalog snapshot,
+ * OrderService and connection pool, ringing up baskets drawn from the
+ * catalog and checking them out as fast as it can (or with a think time).
+ * <p>
+ * The terminal count is ramped through a list of steps. Every step reports
+ * checkouts/sec, checkout latency percentiles, deadlocks and lock timeouts,
+ * and afterwards reconciles the database: stock taken must equal the
+ * quantities on the step's invoice lines (else an update was lost), no
+ * product may go below zero or sell more than it had (oversell), and every
+ * receipt a terminal got must be in the invoices table.
+ * <p>
+ * Runs against a fresh embedded H2 database in MySQL mode by default; set
+ * {@code -Dload.url} (plus {@code load.user}/{@code load.password}) to use a
+ * local MySQL with the app's schema. It writes invoices and resets product
+ * stock at every step, so only point it at a scratch database.
+ * <pre>
+ * java -cp benchmarks/target/benchmarks.jar App.bench.LoadTest
+ * java -Dload.terminals=1,4,16,64 -Dload.seconds=30 -Dload.stock=200 -cp benchmarks/target/benchmarks.jar App.bench.LoadTest
+ * </pre>
+ */
+public final class LoadTest {
+    // Keep a strong reference so the level sticks; CheckoutWriter logs every order at INFO
+    private static final Logger APP_LOGGER = Logger.getLogger("App");
+
+    // 1 to 4 lines per basket, most customers buy one or two things
+    private static final int[] LINES_WEIGHTS = { 60, 25, 10, 5 };
+    private static final int[] QUANTITY_WEIGHTS = { 80, 15, 5 };
+    private static final double DISCOUNT_SHARE = 0.10;
+    private static final String DISCOUNT_CODE = "WELCOME10";
+    // Throughput counts as still scaling while a step beats the best so far by this factor
+    private static final double SCALING_GAIN = 1.05;
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final int[] steps;
+    private final int warmupSeconds;
+    private final int seconds;
+    private final int stock;
+    private final int poolSize;
+    private final long thinkMillis;
+
+    private LoadTest(String url, String user, String password, int[] steps, int warmupSeconds, int seconds,
+            int stock, int poolSize, long thinkMillis) {
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.steps = steps;
+        this.warmupSeconds = warmupSeconds;
+        this.seconds = seconds;
+        this.stock = stock;
+        this.poolSize = poolSize;
+        this.thinkMillis = thinkMillis;
+    }
+
+    public static void main(String[] args) throws Exception {
+        APP_LOGGER.setLevel(Level.WARNING);
+
+        String url = System.getProperty("load.url");
+        Connection keepAlive = null;
+        if (url == null) {
+            url = BenchmarkDatabase.newUrl();
+            keepAlive = BenchmarkDatabase.open(url);
+        }
+        int[] steps = Arrays.stream(System.getProperty("load.terminals", "1,2,4,8,16,32").split(","))
+                .map(String::trim).mapToInt(Integer::parseInt).toArray();
+        LoadTest test = new LoadTest(url,
+                System.getProperty("load.user", ""),
+                System.getProperty("load.password", ""),
+                steps,
+                Integer.getInteger("load.warmupSeconds", 5),
+                Integer.getInteger("load.seconds", 15),
+                Integer.getInteger("load.stock", 100_000),
+                Integer.getInteger("load.poolSize", 1),
+                Long.getLong("load.thinkMillis", 0L));
+        try {
+            test.run();
+        } finally {
+            if (keepAlive != null) {
+                keepAlive.close();
+            }
+        }
+    }
+
+    private void run() throws Exception {
+        System.out.printf("Load test against %s%n", url.startsWith("jdbc:h2:") ? "embedded H2 (MySQL mode)" : url);
+        System.out.printf("Steps %s terminals, %d s each, stock %d per product, pool %d per terminal, think %d ms%n",
+                Arrays.toString(steps), seconds, stock, poolSize, thinkMillis);
+        if (warmupSeconds > 0) {
+            System.out.printf("Warming up with %d terminal(s) for %d s...%n", steps[0], warmupSeconds);
+            runStep(steps[0], warmupSeconds);
+        }
+
+        System.out.println();
+        System.out.println(StepResult.HEADER);
+        List<StepResult> results = new ArrayList<>();
+        for (int terminals : steps) {
+            StepResult result = runStep(terminals, seconds);
+            results.add(result);
+            System.out.println(result.format());
+            if (result.firstError != null) {
+                System.out.println("          first error: " + result.firstError);
+            }
+        }
+        System.out.println();
+        System.out.println(saturation(results));
+        Path csv = writeCsv(results);
+        System.out.println("Results written to " + csv);
+    }
+
+    private StepResult runStep(int terminals, int stepSeconds) throws Exception {
+        try (Connection connection = connect()) {
+            resetStock(connection);
+            int lastInvoiceId = maxInvoiceId(connection);
+            Map<Integer, Integer> stockBefore = readStock(connection);
+
+            Terminal[] workers = new Terminal[terminals];
+            for (int i = 0; i < terminals; i++) {
+                workers[i] = new Terminal(i, connection);
+            }
+            long deadline = System.nanoTime() + stepSeconds * 1_000_000_000L;
+            long start = System.nanoTime();
+            try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                List<Future<?>> running = new ArrayList<>();
+                for (Terminal worker : workers) {
+                    running.add(executor.submit(() -> {
+                        worker.run(deadline);
+                        return null;
+                    }));
+                }
+                for (Future<?> future : running) {
+                    future.get();
+                }
+            } finally {
+                for (Terminal worker : workers) {
+                    worker.close();
+                }
+            }
+            double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+
+            StepResult result = new StepResult(terminals, elapsedSeconds, workers);
+            reconcile(connection, result, workers, stockBefore, lastInvoiceId);
+            return result;
+        }
+    }
+
+    /** Compares the stock the database took with what the step's invoices and the terminals' receipts say was sold. */
+    private void reconcile(Connection connection, StepResult result, Terminal[] workers,
+            Map<Integer, Integer> stockBefore, int lastInvoiceId) throws SQLException {
+        Map<Integer, Integer> stockAfter = readStock(connection);
+        Map<Integer, Integer> invoiced = new HashMap<>();
+        try (PreparedStatement ps = connection.prepareStatement(
+                "SELECT product_id, SUM(quantity) FROM invoice_items WHERE invoice_id > ? GROUP BY product_id")) {
+            ps.setInt(1, lastInvoiceId);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    invoiced.put(rs.getInt(1), rs.getInt(2));
+                }
+            }
+        }
+        Map<Integer, Integer> receipted = new HashMap<>();
+        for (Terminal worker : workers) {
+            worker.sold.forEach((id, qty) -> receipted.merge(id, qty, Integer::sum));
+        }
+
+        for (Map.Entry<Integer, Integer> entry : stockBefore.entrySet()) {
+            int id = entry.getKey();
+            int before = entry.getValue();
+            int after = stockAfter.getOrDefault(id, 0);
+            int sold = invoiced.getOrDefault(id, 0);
+            if (after < 0 || sold > before) {
+                result.oversoldProducts++;
+            }
+            if (before - after != sold || receipted.getOrDefault(id, 0) != sold) {
+                result.lostUpdateProducts++;
+            }
+        }
+        try (PreparedStatement ps = connection.prepareStatement("SELECT COUNT(*) FROM invoices WHERE id > ?")) {
+            ps.setInt(1, lastInvoiceId);
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                result.missingInvoices = result.completed - rs.getInt(1);
+            }
+        }
+    }
+
+    private Connection connect() throws SQLException {
+        return DriverManager.getConnection(url, user, password);
+    }
+
+    private void resetStock(Connection connection) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement("UPDATE products SET stock = ?")) {
+            ps.setInt(1, stock);
+            ps.executeUpdate();
+        }
+    }
+
+    private static Map<Integer, Integer> readStock(Connection connection) throws SQLException {
+        Map<Integer, Integer> stock = new HashMap<>();
+        try (Statement st = connection.createStatement();
+                ResultSet rs = st.executeQuery("SELECT id, stock FROM products")) {
+            while (rs.next()) {
+                stock.put(rs.getInt(1), rs.getInt(2));
+            }
+        }
+        return stock;
+    }
+
+    private static int maxInvoiceId(Connection connection) throws SQLException {
+        try (Statement st = connection.createStatement();
+                ResultSet rs = st.executeQuery("SELECT COALESCE(MAX(id), 0) FROM invoices")) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    /** First step whose throughput no longer beats the best so far by {@link #SCALING_GAIN}. */
+    static String saturation(List<StepResult> results) {
+        StepResult best = null;
+        for (StepResult result : results) {
+            if (best != null && result.throughput() < best.throughput() * SCALING_GAIN) {
+                return String.format("Saturated: %d terminals gave %.1f checkouts/s, no better than %.1f at %d terminals.",
+                        result.terminals, result.throughput(), best.throughput(), best.terminals);
+            }
+            if (best == null || result.throughput() > best.throughput()) {
+                best = result;
+            }
+        }
+        return best == null ? "No steps run."
+                : String.format("Still scaling at %d terminals (%.1f checkouts/s); add larger steps to find the limit.",
+                        best.terminals, best.throughput());
+    }
+
+    private Path writeCsv(List<StepResult> results) throws IOException {
+        Path dir = Paths.get(System.getProperty("load.resultsDir", "load-results"));
+        Files.createDirectories(dir);
+        String stamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"));
+        Path file = dir.resolve(stamp + ".csv");
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8))) {
+            out.println("terminals,checkouts,checkouts_per_sec,p50_ms,p99_ms,p999_ms,max_ms,"
+                    + "deadlocks,lock_timeouts,stock_rejected,errors,oversold_products,lost_update_products,missing_invoices");
+            for (StepResult r : results) {
+                out.printf("%d,%d,%.2f,%.3f,%.3f,%.3f,%.3f,%d,%d,%d,%d,%d,%d,%d%n",
+                        r.terminals, r.completed, r.throughput(), r.percentileMillis(0.50), r.percentileMillis(0.99),
+                        r.percentileMillis(0.999), r.percentileMillis(1.0), r.deadlocks, r.lockTimeouts,
+                        r.stockRejected, r.errors, r.oversoldProducts, r.lostUpdateProducts, r.missingInvoices);
+            }
+        }
+        return file;
+    }
+
+    /** One register: its own catalog snapshot, engine and connections, like a separate app instance. */
+    private final class Terminal {
+        private final Random random;
+        private final DataAccess dataAccess;
+        private final OrderService service;
+        private final List<Product> products;
+        private final int[] popularity;
+        private final Map<Integer, Integer> sold = new HashMap<>();
+        private long[] latencies = new long[1024];
+        private int latencyCount;
+        private int completed;
+        private int deadlocks;
+        private int lockTimeouts;
+        private int stockRejected;
+        private int errors;
+        private Throwable firstError;
+
+        Terminal(int number, Connection connection) throws SQLException {
+            this.random = new Random(31L * number + 17);
+            this.products = BenchmarkDatabase.readProducts(connection);
+            this.popularity = popularityWeights(products.size());
+            DiscountCodeIndex codes = new DiscountCodeIndex();
+            codes.replaceAll(BenchmarkDatabase.readDiscountCodes(connection));
+            CatalogIndex catalog = new CatalogIndex(products);
+            this.dataAccess = new DataAccess(new ConnectionPool(url, user, password, poolSize));
+            this.service = new OrderService(dataAccess, codes, catalog::get);
+        }
+
+        void run(long deadline) throws InterruptedException {
+            while (System.nanoTime() < deadline) {
+                Cart cart = service.newCart();
+                ringUp(cart);
+                if (cart.isEmpty()) {
+                    // This terminal's snapshot has sold out; nothing left to sell
+                    return;
+                }
+                long start = System.nanoTime();
+                try {
+                    Receipt receipt = service.checkout(cart).join();
+                    recordLatency(System.nanoTime() - start);
+                    completed++;
+                    for (OrderLine line : receipt.getLines()) {
+                        sold.merge(line.getProductId(), line.getQuantity(), Integer::sum);
+                    }
+                } catch (CompletionException e) {
+                    classify(e.getCause());
+                    service.cancel(cart);
+                }
+                if (thinkMillis > 0) {
+                    Thread.sleep(thinkMillis);
+                }
+            }
+        }
+
+        private void ringUp(Cart cart) {
+            int lineCount = 1 + pick(LINES_WEIGHTS);
+            if (random.nextDouble() < DISCOUNT_SHARE) {
+                service.applyDiscount(cart, DISCOUNT_CODE);
+            }
+            for (int i = 0; i < lineCount; i++) {
+                Product product = products.get(pick(popularity));
+                Variant variant = product.getCategory() == Category.DRINK
+                        ? (random.nextBoolean() ? Variant.HOT : Variant.COLD) : null;
+                service.addItem(cart, product, variant, 1 + pick(QUANTITY_WEIGHTS));
+            }
+        }
+
+        private void classify(Throwable failure) {
+            if (failure instanceof CheckoutWriter.InsufficientStockException) {
+                stockRejected++;
+            } else if (failure instanceof SQLException e && isDeadlock(e)) {
+                deadlocks++;
+            } else if (failure instanceof SQLException e && isLockTimeout(e)) {
+                lockTimeouts++;
+            } else {
+                if (firstError == null) {
+                    firstError = failure;
+                }
+                errors++;
+            }
+        }
+
+        private void recordLatency(long nanos) {
+            if (latencyCount == latencies.length) {
+                latencies = Arrays.copyOf(latencies, latencyCount * 2);
+            }
+            latencies[latencyCount++] = nanos;
+        }
+
+        /** Index drawn with probability proportional to its weight. */
+        private int pick(int[] weights) {
+            int total = 0;
+            for (int w : weights) {
+                total += w;
+            }
+            int r = random.nextInt(total);
+            for (int i = 0; i < weights.length; i++) {
+                r -= weights[i];
+                if (r < 0) {
+                    return i;
+                }
+            }
+            return weights.length - 1;
+        }
+
+        void close() {
+            dataAccess.close();
+        }
+    }
+
+    /** Zipf-like popularity: the catalog's first products sell most, as a menu's staples do. */
+    private static int[] popularityWeights(int size) {
+        int[] weights = new int[size];
+        for (int i = 0; i < size; i++) {
+            weights[i] = Math.max(1, 1000 / (i + 1));
+        }
+        return weights;
+    }
+
+    // MySQL reports a deadlock as 1213/40001 and H2 as 40001
+    private static boolean isDeadlock(SQLException e) {
+        return "40001".equals(e.getSQLState()) || e.getErrorCode() == 1213;
+    }
+
+    // MySQL innodb_lock_wait_timeout is 1205, H2's lock timeout is 50200
+    private static boolean isLockTimeout(SQLException e) {
+        return e.getErrorCode() == 1205 || e.getErrorCode() == 50200;
+    }
+
+    private static final class StepResult {
+        static final String HEADER = String.format("%9s %9s %10s %8s %8s %8s %8s %6s %6s %7s %6s %8s %8s %7s",
+                "terminals", "checkouts", "per sec", "p50 ms", "p99 ms", "p999 ms", "max ms",
+                "dlock", "lockto", "nostock", "errors", "oversold", "lostupd", "missing");
+
+        final int terminals;
+        final double seconds;
+        final long[] latencies;
+        final int completed;
+        final int deadlocks;
+        final int lockTimeouts;
+        final int stockRejected;
+        final int errors;
+        final Throwable firstError;
+        int oversoldProducts;
+        int lostUpdateProducts;
+        int missingInvoices;
+
+        StepResult(int terminals, double seconds, Terminal[] workers) {
+            this.terminals = terminals;
+            this.seconds = seconds;
+            int count = 0, deadlocks = 0, lockTimeouts = 0, stockRejected = 0, errors = 0;
+            Throwable firstError = null;
+            for (Terminal w : workers) {
+                if (firstError == null) {
+                    firstError = w.firstError;
+                }
+                count += w.latencyCount;
+                deadlocks += w.deadlocks;
+                lockTimeouts += w.lockTimeouts;
+                stockRejected += w.stockRejected;
+                errors += w.errors;
+            }
+            long[] all = new long[count];
+            int completed = 0;
+            int offset = 0;
+            for (Terminal w : workers) {
+                System.arraycopy(w.latencies, 0, all, offset, w.latencyCount);
+                offset += w.latencyCount;
+                completed += w.completed;
+            }
+            Arrays.sort(all);
+            this.latencies = all;
+            this.completed = completed;
+            this.deadlocks = deadlocks;
+            this.lockTimeouts = lockTimeouts;
+            this.stockRejected = stockRejected;
+            this.errors = errors;
+            this.firstError = firstError;
+        }
+
+        double throughput() {
+            return completed / seconds;
+        }
+
+        /** Nearest-rank percentile of the successful checkouts' latency. */
+        double percentileMillis(double p) {
+            if (latencies.length == 0)
+                return 0.0;
+            int rank = (int) Math.ceil(p * latencies.length);
+            return latencies[Math.max(0, rank - 1)] / 1e6;
+        }
+
+        String format() {
+            return String.format("%9d %9d %10.1f %8.2f %8.2f %8.2f %8.2f %6d %6d %7d %6d %8d %8d %7d",
+                    terminals, completed, throughput(), percentileMillis(0.50), percentileMillis(0.99),
+                    percentileMillis(0.999), percentileMillis(1.0), deadlocks, lockTimeouts, stockRejected,
+                    errors, oversoldProducts, lostUpdateProducts, missingInvoices);
+        }
+    }
+}
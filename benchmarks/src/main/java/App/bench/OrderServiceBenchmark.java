@@ -0,0 +1,99 @@
+package App.bench;
+
+import App.Cart;
+import App.CatalogIndex;
+import App.ConnectionPool;
+import App.DataAccess;
+import App.DiscountCodeIndex;
+import App.OrderService;
+import App.Product;
+import App.Receipt;
+import App.Variant;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The headless ordering engine driven by several registers at once: ring up
+ * a cart, apply a code and check out through the connection pool.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class OrderServiceBenchmark {
+    @Param({ "3" })
+    public int itemsPerOrder;
+
+    @Param({ "4" })
+    public int poolSize;
+
+    private Connection keepAlive;
+    private DataAccess dataAccess;
+    private OrderService service;
+    private List<Product> products;
+
+    @Setup
+    public void setUp() throws Exception {
+        String url = BenchmarkDatabase.newUrl();
+        keepAlive = BenchmarkDatabase.open(url);
+        BenchmarkDatabase.seedProducts(keepAlive, 500);
+        products = BenchmarkDatabase.readProducts(keepAlive);
+        CatalogIndex catalog = new CatalogIndex(products);
+        DiscountCodeIndex codes = new DiscountCodeIndex();
+        codes.replaceAll(BenchmarkDatabase.readDiscountCodes(keepAlive));
+
+        dataAccess = new DataAccess(new ConnectionPool(url, "", "", poolSize));
+        service = new OrderService(dataAccess, codes, catalog::get);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        dataAccess.close();
+        keepAlive.close();
+    }
+
+    @Benchmark
+    public long ringUpAndCancel() {
+        Cart cart = service.newCart();
+        addItems(cart);
+        long total = cart.getTotalCents();
+        service.cancel(cart);
+        return total;
+    }
+
+    @Benchmark
+    public Receipt ringUpAndCheckout() {
+        Cart cart = service.newCart();
+        addItems(cart);
+        service.applyDiscount(cart, "welcome10");
+        return service.checkout(cart).join();
+    }
+
+    private void addItems(Cart cart) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < itemsPerOrder; i++) {
+            Product p = products.get(random.nextInt(products.size()));
+            service.addItem(cart, p, random.nextBoolean() ? Variant.HOT : Variant.COLD, 1);
+        }
+    }
+}
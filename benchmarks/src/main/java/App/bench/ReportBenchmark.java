@@ -0,0 +1,78 @@
+package App.bench;
+
+import App.DailySale;
+import App.LowStockItem;
+import App.ReportReader;
+import App.SalesWindow;
+import App.TopProduct;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/** The admin report queries, served from the sales rollups. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReportBenchmark {
+    @Param({ "1000", "100000" })
+    public int invoices;
+
+    @Param({ "200" })
+    public int products;
+
+    /** Only the top-products query depends on the window. */
+    @State(Scope.Benchmark)
+    public static class Window {
+        @Param({ "TODAY", "LAST_30_DAYS", "ALL_TIME" })
+        public SalesWindow value;
+    }
+
+    private Connection connection;
+    private ReportReader reader;
+
+    @Setup
+    public void setUp() throws Exception {
+        connection = BenchmarkDatabase.open();
+        BenchmarkDatabase.seedProducts(connection, products);
+        BenchmarkDatabase.seedInvoices(connection, invoices);
+        reader = new ReportReader(connection);
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        connection.close();
+    }
+
+    @Benchmark
+    public List<DailySale> dailySales() throws SQLException {
+        return reader.loadDailySales(366);
+    }
+
+    @Benchmark
+    public List<TopProduct> topProducts(Window window) throws SQLException {
+        return reader.loadTopProducts(window.value, 10);
+    }
+
+    @Benchmark
+    public List<LowStockItem> lowStock() throws SQLException {
+        return reader.loadLowStock(5);
+    }
+}
@@ -0,0 +1,56 @@
+#!/usr/bin/env bash
+# Builds a self-contained runtime image for a register in app/target/image:
+# a jlink'ed JDK with only the modules the app uses, the app on the class path,
+# and an AppCDS archive from a training run, so classes load from the archive
+# instead of being parsed and verified on every start.
+#
+# Usage: packaging/build-runtime.sh        (from the repository root, JDK 21 on PATH)
+#   SKIP_TRAINING=1   skip the training run; the launcher then creates the archive on first start
+#   TRAINING_ARGS=... extra JVM options for the training run, e.g. -Dcoffee.db.url=...
+set -euo pipefail
+
+cd "$(dirname "$0")/.."
+ROOT=$(pwd)
+TARGET="$ROOT/app/target"
+IMAGE="$TARGET/image"
+MODULES=java.base,java.sql,java.logging,java.management,java.management.rmi,java.naming,jdk.unsupported,jdk.crypto.ec,javafx.controls
+
+mvn -B -q -pl app -am package -Pruntime-image -DskipTests
+
+# The platform-specific JavaFX jars carry the modules and their native libraries
+FX_PATH=$(find "$TARGET/lib" -name 'javafx-*-*.jar' | tr '\n' ':')
+
+rm -rf "$IMAGE"
+jlink --module-path "${FX_PATH%:}" \
+      --add-modules "$MODULES" \
+      --generate-cds-archive \
+      --strip-debug --no-header-files --no-man-pages \
+      --output "$IMAGE"
+
+mkdir -p "$IMAGE/app" "$IMAGE/build/classes/App" "$IMAGE/sql"
+cp "$TARGET"/coffee-order-app-*.jar "$IMAGE/app/coffee-order-app.jar"
+find "$TARGET/lib" -name 'mysql-connector-j-*.jar' -exec cp {} "$IMAGE/app/" \;
+cp -r "$ROOT/build/classes/App/images" "$IMAGE/build/classes/App/"
+cp -r "$ROOT/sql/migrations" "$IMAGE/sql/"
+
+# Relative paths (images, migrations, journal, metrics) resolve against the image folder
+cat > "$IMAGE/bin/coffee-order" <<'EOF'
+#!/bin/sh
+cd "$(dirname "$0")/.." || exit 1
+exec bin/java -XX:SharedArchiveFile=app.jsa -XX:+AutoCreateSharedArchive \
+     -cp "app/*" App.CoffeeOrderApp "$@"
+EOF
+chmod +x "$IMAGE/bin/coffee-order"
+cat > "$IMAGE/bin/coffee-order.cmd" <<'EOF'
+@echo off
+cd /d "%~dp0.."
+bin\java -XX:SharedArchiveFile=app.jsa -XX:+AutoCreateSharedArchive -cp "app\*" App.CoffeeOrderApp %*
+EOF
+
+if [ "${SKIP_TRAINING:-0}" != "1" ]; then
+    # Logs in to the order screen, then exits; needs a display and a reachable database
+    (cd "$IMAGE" && bin/java -XX:ArchiveClassesAtExit=app.jsa -Dcoffee.startup.trainingRun=true \
+        ${TRAINING_ARGS:-} -cp "app/*" App.CoffeeOrderApp)
+fi
+
+echo "Runtime image: $IMAGE ($(du -sh "$IMAGE" | cut -f1)); start it with bin/coffee-order"
@@ -0,0 +1,41 @@
+-- Rebuilds the sales rollups (daily_sales, hourly_sales, product_sales,
+-- product_sales_total) from the invoices.
+-- Migration V5 creates the rollups and fills them the same way; run this only to recompute them,
+-- while no register is checking out. Every checkout keeps the rollups up to date in its own transaction.
+-- Safe to re-run: every rollup is rebuilt from scratch.
+
+START TRANSACTION;
+
+DELETE FROM daily_sales;
+INSERT INTO daily_sales (sale_date, order_count, total)
+SELECT sale_date, COUNT(*), SUM(total)
+FROM invoices
+GROUP BY sale_date;
+
+DELETE FROM hourly_sales;
+INSERT INTO hourly_sales (sale_date, sale_hour, order_count, total)
+SELECT sale_date, HOUR(date_time), COUNT(*), SUM(total)
+FROM invoices
+GROUP BY sale_date, HOUR(date_time);
+
+-- The variant is only recorded in the display name ("Latte (Hot)"); lines whose product
+-- was deleted (product_id NULL) cannot be attributed.
+DELETE FROM product_sales;
+INSERT INTO product_sales (product_id, variant, sale_date, quantity, revenue)
+SELECT ii.product_id,
+       CASE WHEN ii.product_name LIKE '% (Hot)' THEN 'HOT'
+            WHEN ii.product_name LIKE '% (Cold)' THEN 'COLD'
+            ELSE '' END,
+       i.sale_date, SUM(ii.quantity), SUM(ii.line_price)
+FROM invoice_items ii
+JOIN invoices i ON i.id = ii.invoice_id
+WHERE ii.product_id IS NOT NULL
+GROUP BY 1, 2, 3;
+
+DELETE FROM product_sales_total;
+INSERT INTO product_sales_total (product_id, variant, quantity, revenue)
+SELECT product_id, variant, SUM(quantity), SUM(revenue)
+FROM product_sales
+GROUP BY product_id, variant;
+
+COMMIT;
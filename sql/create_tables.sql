@@ -11,18 +11,41 @@ CREATE TABLE products (
     id INT AUTO_INCREMENT PRIMARY KEY,
     name VARCHAR(100) NOT NULL,
     image_name VARCHAR(100) DEFAULT 'default.png',
-    price DOUBLE NOT NULL,
+    price DECIMAL(12,2) NOT NULL,
     stock INT NOT NULL,
-    category VARCHAR(10) NOT NULL -- DRINK or DESSERT
+    category VARCHAR(10) NOT NULL, -- DRINK or DESSERT
+    change_version BIGINT NOT NULL DEFAULT 0, -- catalog_version of the last admin edit
+    version INT NOT NULL DEFAULT 0 -- row version for optimistic admin updates
 );
 
+CREATE INDEX idx_products_change_version ON products (change_version);
+
 -- Create the discount_codes table
 CREATE TABLE discount_codes (
     id INT AUTO_INCREMENT PRIMARY KEY,
     code VARCHAR(50) NOT NULL,
-    discount_percent DOUBLE NOT NULL, -- Value between 0.0 and 1.0
+    discount_percent DECIMAL(5,4) NOT NULL, -- Value between 0.0 and 1.0
     usage_count INT DEFAULT 0,
-    active BOOLEAN DEFAULT TRUE
+    active BOOLEAN DEFAULT TRUE,
+    change_version BIGINT NOT NULL DEFAULT 0, -- catalog_version of the last admin edit
+    CONSTRAINT uq_discount_codes_code UNIQUE (code)
+);
+
+CREATE INDEX idx_discount_codes_change_version ON discount_codes (change_version);
+
+-- Create the catalog_version counter: bumped by every admin edit to products or discount codes
+CREATE TABLE catalog_version (
+    id TINYINT PRIMARY KEY,
+    version BIGINT NOT NULL
+);
+INSERT INTO catalog_version (id, version) VALUES (1, 0);
+
+-- Create the catalog_deletions table: deleted products and codes, so registers can drop them
+CREATE TABLE catalog_deletions (
+    change_version BIGINT NOT NULL,
+    entity VARCHAR(20) NOT NULL, -- PRODUCT or DISCOUNT_CODE
+    entity_id INT NOT NULL,
+    PRIMARY KEY (change_version, entity, entity_id)
 );
 
 -- Create the invoices table
@@ -30,16 +53,70 @@ CREATE TABLE invoices (
     id INT AUTO_INCREMENT PRIMARY KEY,
     order_id VARCHAR(20) NOT NULL, -- Unique reference
     date_time DATETIME NOT NULL,
-    total DOUBLE NOT NULL
+    total DECIMAL(12,2) NOT NULL,
+    sale_date DATE AS (DATE(date_time)), -- Generated, for day filters that can use an index
+    CONSTRAINT uq_invoices_order_id UNIQUE (order_id)
 );
 
+CREATE INDEX idx_invoices_date_time ON invoices (date_time);
+CREATE INDEX idx_invoices_sale_date ON invoices (sale_date);
+
 -- Create the invoice_items table
 CREATE TABLE invoice_items (
     id INT AUTO_INCREMENT PRIMARY KEY,
     invoice_id INT NOT NULL,
-    product_name VARCHAR(100) NOT NULL, -- Product name reference
+    product_id INT NULL, -- NULL once the product is deleted
+    product_name VARCHAR(100) NOT NULL, -- Name as sold, e.g. "Latte (Hot)"
     quantity INT NOT NULL,
-    line_price DOUBLE NOT NULL,
-    FOREIGN KEY (invoice_id) REFERENCES invoices(id) ON DELETE CASCADE
+    line_price DECIMAL(12,2) NOT NULL,
+    FOREIGN KEY (invoice_id) REFERENCES invoices(id) ON DELETE CASCADE,
+    CONSTRAINT fk_invoice_items_product FOREIGN KEY (product_id) REFERENCES products(id) ON DELETE SET NULL
+);
+
+CREATE INDEX idx_invoice_items_invoice ON invoice_items (invoice_id);
+CREATE INDEX idx_invoice_items_product ON invoice_items (product_id);
+
+-- Create the daily_sales rollup (maintained by each checkout)
+CREATE TABLE daily_sales (
+    sale_date DATE PRIMARY KEY,
+    order_count INT NOT NULL,
+    total DECIMAL(12,2) NOT NULL
 );
 
+-- Create the hourly_sales rollup (maintained by each checkout)
+CREATE TABLE hourly_sales (
+    sale_date DATE NOT NULL,
+    sale_hour TINYINT NOT NULL, -- 0 to 23
+    order_count INT NOT NULL,
+    total DECIMAL(12,2) NOT NULL,
+    PRIMARY KEY (sale_date, sale_hour)
+);
+
+-- Create the product_sales rollup: units and revenue per product, variant and day
+CREATE TABLE product_sales (
+    product_id INT NOT NULL,
+    variant VARCHAR(10) NOT NULL DEFAULT '', -- HOT, COLD or '' for products without variants
+    sale_date DATE NOT NULL,
+    quantity INT NOT NULL,
+    revenue DECIMAL(12,2) NOT NULL,
+    PRIMARY KEY (product_id, variant, sale_date),
+    INDEX idx_product_sales_date (sale_date)
+);
+
+-- Create the product_sales_total rollup: all-time units and revenue per product and variant
+CREATE TABLE product_sales_total (
+    product_id INT NOT NULL,
+    variant VARCHAR(10) NOT NULL DEFAULT '',
+    quantity INT NOT NULL,
+    revenue DECIMAL(12,2) NOT NULL,
+    PRIMARY KEY (product_id, variant)
+);
+
+-- Create the schema_version table (see sql/migrations); a fresh install is at the latest version
+CREATE TABLE schema_version (
+    version INT PRIMARY KEY,
+    description VARCHAR(200) NOT NULL,
+    applied_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+INSERT INTO schema_version (version, description) VALUES (1, 'baseline'), (2, 'invoice keys and indexes'),
+    (3, 'catalog change tracking'), (4, 'product row version'), (5, 'sales rollups'), (6, 'decimal money');
@@ -0,0 +1,34 @@
+-- V2: reference products by id from invoice_items, add the missing indexes and
+-- unique keys, and a generated sale_date column on invoices.
+-- Fails on the unique keys if duplicate order_id or discount code values exist;
+-- resolve those rows first and start the app again.
+
+-- invoice_items.product_id, backfilled by matching the stored display name
+-- ("Latte", "Latte (Hot)", "Latte (Cold)") against the current product names.
+-- Lines of products that were renamed or deleted keep a NULL product_id.
+ALTER TABLE invoice_items ADD COLUMN product_id INT NULL AFTER invoice_id;
+
+UPDATE invoice_items
+SET product_id = (
+    SELECT MIN(p.id) FROM products p
+    WHERE invoice_items.product_name IN (p.name, CONCAT(p.name, ' (Hot)'), CONCAT(p.name, ' (Cold)'))
+)
+WHERE product_id IS NULL;
+
+CREATE INDEX idx_invoice_items_invoice ON invoice_items (invoice_id);
+CREATE INDEX idx_invoice_items_product ON invoice_items (product_id);
+
+ALTER TABLE invoice_items ADD CONSTRAINT fk_invoice_items_product
+    FOREIGN KEY (product_id) REFERENCES products(id) ON DELETE SET NULL;
+
+-- invoices: sale_date is derived from date_time so reports can filter on an
+-- indexed day without wrapping the column in DATE()
+ALTER TABLE invoices ADD COLUMN sale_date DATE AS (DATE(date_time));
+
+CREATE INDEX idx_invoices_date_time ON invoices (date_time);
+CREATE INDEX idx_invoices_sale_date ON invoices (sale_date);
+
+ALTER TABLE invoices ADD CONSTRAINT uq_invoices_order_id UNIQUE (order_id);
+
+-- discount_codes: one row per code
+ALTER TABLE discount_codes ADD CONSTRAINT uq_discount_codes_code UNIQUE (code);
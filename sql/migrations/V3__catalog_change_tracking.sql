@@ -0,0 +1,25 @@
+-- V3: catalog change tracking, so registers pick up admin edits to products
+-- and discount codes without a full reload.
+-- Every admin write bumps catalog_version.version in its own transaction and
+-- stamps the rows it touched (or, for deletes, a catalog_deletions row) with
+-- the new value. Registers poll the single version row and fetch only the rows
+-- stamped after the version they have. Checkout stock decrements and discount
+-- usage counts do not bump the version.
+CREATE TABLE catalog_version (
+    id TINYINT PRIMARY KEY,
+    version BIGINT NOT NULL
+);
+INSERT INTO catalog_version (id, version) VALUES (1, 0);
+
+ALTER TABLE products ADD COLUMN change_version BIGINT NOT NULL DEFAULT 0;
+CREATE INDEX idx_products_change_version ON products (change_version);
+
+ALTER TABLE discount_codes ADD COLUMN change_version BIGINT NOT NULL DEFAULT 0;
+CREATE INDEX idx_discount_codes_change_version ON discount_codes (change_version);
+
+CREATE TABLE catalog_deletions (
+    change_version BIGINT NOT NULL,
+    entity VARCHAR(20) NOT NULL, -- PRODUCT or DISCOUNT_CODE
+    entity_id INT NOT NULL,
+    PRIMARY KEY (change_version, entity, entity_id)
+);
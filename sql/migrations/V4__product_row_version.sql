@@ -0,0 +1,7 @@
+-- V4: optimistic concurrency for admin product edits.
+-- products.version is bumped by every admin update. An update only applies if
+-- the version still matches the one the admin's form was loaded with, so an
+-- edit based on stale data is detected instead of overwriting newer values.
+-- Admin stock edits are written as a delta, like checkout decrements, which
+-- do not bump the version.
+ALTER TABLE products ADD COLUMN version INT NOT NULL DEFAULT 0;
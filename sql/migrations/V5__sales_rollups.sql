@@ -0,0 +1,66 @@
+-- V5: the sales rollups that the Daily Sales and Top-Selling reports read and
+-- every checkout updates in its own transaction, rebuilt from the invoices.
+-- Tables created by hand from create_tables.sql are kept and rebuilt the same
+-- way as by sql/backfill_sales_rollup.sql. Lines whose product was deleted
+-- (product_id NULL) are not attributed to a product.
+CREATE TABLE IF NOT EXISTS daily_sales (
+    sale_date DATE PRIMARY KEY,
+    order_count INT NOT NULL,
+    total DECIMAL(12,2) NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS hourly_sales (
+    sale_date DATE NOT NULL,
+    sale_hour TINYINT NOT NULL,
+    order_count INT NOT NULL,
+    total DECIMAL(12,2) NOT NULL,
+    PRIMARY KEY (sale_date, sale_hour)
+);
+
+CREATE TABLE IF NOT EXISTS product_sales (
+    product_id INT NOT NULL,
+    variant VARCHAR(10) NOT NULL DEFAULT '',
+    sale_date DATE NOT NULL,
+    quantity INT NOT NULL,
+    revenue DECIMAL(12,2) NOT NULL,
+    PRIMARY KEY (product_id, variant, sale_date),
+    INDEX idx_product_sales_date (sale_date)
+);
+
+CREATE TABLE IF NOT EXISTS product_sales_total (
+    product_id INT NOT NULL,
+    variant VARCHAR(10) NOT NULL DEFAULT '',
+    quantity INT NOT NULL,
+    revenue DECIMAL(12,2) NOT NULL,
+    PRIMARY KEY (product_id, variant)
+);
+
+DELETE FROM daily_sales;
+INSERT INTO daily_sales (sale_date, order_count, total)
+SELECT sale_date, COUNT(*), SUM(total)
+FROM invoices
+GROUP BY sale_date;
+
+DELETE FROM hourly_sales;
+INSERT INTO hourly_sales (sale_date, sale_hour, order_count, total)
+SELECT sale_date, HOUR(date_time), COUNT(*), SUM(total)
+FROM invoices
+GROUP BY sale_date, HOUR(date_time);
+
+DELETE FROM product_sales;
+INSERT INTO product_sales (product_id, variant, sale_date, quantity, revenue)
+SELECT ii.product_id,
+       CASE WHEN ii.product_name LIKE '% (Hot)' THEN 'HOT'
+            WHEN ii.product_name LIKE '% (Cold)' THEN 'COLD'
+            ELSE '' END,
+       i.sale_date, SUM(ii.quantity), SUM(ii.line_price)
+FROM invoice_items ii
+JOIN invoices i ON i.id = ii.invoice_id
+WHERE ii.product_id IS NOT NULL
+GROUP BY 1, 2, 3;
+
+DELETE FROM product_sales_total;
+INSERT INTO product_sales_total (product_id, variant, quantity, revenue)
+SELECT product_id, variant, SUM(quantity), SUM(revenue)
+FROM product_sales
+GROUP BY product_id, variant;
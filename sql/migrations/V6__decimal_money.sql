@@ -0,0 +1,16 @@
+-- V6: store money as exact decimals instead of DOUBLE, so sums in the rollups
+-- and reports no longer drift by fractions of a cent. The app keeps amounts as
+-- whole cents (see Money) and binds them as DECIMAL.
+-- Existing values are rounded to the cent. The rollups keep whatever drift
+-- they had summed up so far; run sql/backfill_sales_rollup.sql afterwards to
+-- rebuild them exactly from the invoices.
+ALTER TABLE products MODIFY COLUMN price DECIMAL(12,2) NOT NULL;
+ALTER TABLE invoices MODIFY COLUMN total DECIMAL(12,2) NOT NULL;
+ALTER TABLE invoice_items MODIFY COLUMN line_price DECIMAL(12,2) NOT NULL;
+ALTER TABLE daily_sales MODIFY COLUMN total DECIMAL(12,2) NOT NULL;
+ALTER TABLE hourly_sales MODIFY COLUMN total DECIMAL(12,2) NOT NULL;
+ALTER TABLE product_sales MODIFY COLUMN revenue DECIMAL(12,2) NOT NULL;
+ALTER TABLE product_sales_total MODIFY COLUMN revenue DECIMAL(12,2) NOT NULL;
+
+-- Discount rates in basis points, e.g. 0.1000 for 10% off
+ALTER TABLE discount_codes MODIFY COLUMN discount_percent DECIMAL(5,4) NOT NULL;
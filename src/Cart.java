@@ -0,0 +1,93 @@
+package App;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One order being rung up: its lines, the stock they hold and the applied
+ * discount. Carts are created and changed through {@link OrderService}; the
+ * getters here are safe to call from any thread and always see a consistent
+ * cart because every access locks the cart.
+ */
+public class Cart {
+    private final List<OrderLine> lines = new ArrayList<>();
+    private final StockReservation reservation = new StockReservation();
+    private DiscountCode discount;
+    private int itemCount;
+    private long subtotalCents;
+    private boolean checkingOut;
+
+    Cart() {
+    }
+
+    synchronized void addLine(OrderLine line) {
+        lines.add(line);
+        itemCount += line.getQuantity();
+        subtotalCents += line.getLinePriceCents();
+        reservation.reserve(line.getProductId(), line.getQuantity());
+    }
+
+    synchronized void setDiscount(DiscountCode discount) {
+        this.discount = discount;
+    }
+
+    synchronized void setCheckingOut(boolean checkingOut) {
+        this.checkingOut = checkingOut;
+    }
+
+    /** Empties the cart and returns what it had reserved, per product id. */
+    synchronized Map<Integer, Integer> clear() {
+        Map<Integer, Integer> released = new LinkedHashMap<>(reservation.getReserved());
+        lines.clear();
+        reservation.clear();
+        discount = null;
+        itemCount = 0;
+        subtotalCents = 0;
+        return released;
+    }
+
+    public synchronized List<OrderLine> getLines() {
+        return new ArrayList<>(lines);
+    }
+
+    public synchronized boolean isEmpty() {
+        return lines.isEmpty();
+    }
+
+    public synchronized int getItemCount() {
+        return itemCount;
+    }
+
+    public synchronized long getSubtotalCents() {
+        return subtotalCents;
+    }
+
+    public synchronized int getDiscountBasisPoints() {
+        return discount == null ? 0 : discount.getBasisPoints();
+    }
+
+    public synchronized DiscountCode getDiscount() {
+        return discount;
+    }
+
+    /** Subtotal with the discount applied, in cents; see {@link Money#applyDiscount}. */
+    public synchronized long getTotalCents() {
+        return Money.applyDiscount(subtotalCents, getDiscountBasisPoints());
+    }
+
+    /** Reserved quantities per product id, as a copy. */
+    public synchronized Map<Integer, Integer> getReserved() {
+        return new LinkedHashMap<>(reservation.getReserved());
+    }
+
+    /** True between the start of a checkout and its outcome; the cart cannot change meanwhile. */
+    public synchronized boolean isCheckingOut() {
+        return checkingOut;
+    }
+
+    public synchronized long getIdleMillis() {
+        return reservation.getIdleMillis();
+    }
+}
@@ -0,0 +1,170 @@
+package App;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Versioned catalog changes (see sql/migrations/V3). Admin writes run through
+ * {@link #stamped} so that they and the catalog version bump commit together.
+ * Registers remember the version their caches reflect and call
+ * {@link #readSince} to fetch only what changed after it. Because the bump
+ * locks the single version row until commit, versions become visible in
+ * order and a poll never skips a change.
+ */
+public class CatalogChanges {
+    public static final String PRODUCT = "PRODUCT";
+    public static final String DISCOUNT_CODE = "DISCOUNT_CODE";
+
+    /** An admin write that stamps its rows with the catalog version it is given. */
+    @FunctionalInterface
+    public interface VersionedWrite<T> {
+        T apply(long version) throws SQLException;
+    }
+
+    /** Rows changed after some version, up to {@link #getVersion()}. */
+    public static class Delta {
+        private final long version;
+        private final List<Product> products;
+        private final List<DiscountCode> discountCodes;
+        private final Set<Integer> deletedProductIds;
+        private final Set<Integer> deletedDiscountCodeIds;
+
+        Delta(long version, List<Product> products, List<DiscountCode> discountCodes,
+                Set<Integer> deletedProductIds, Set<Integer> deletedDiscountCodeIds) {
+            this.version = version;
+            this.products = products;
+            this.discountCodes = discountCodes;
+            this.deletedProductIds = deletedProductIds;
+            this.deletedDiscountCodeIds = deletedDiscountCodeIds;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public List<Product> getProducts() {
+            return products;
+        }
+
+        public List<DiscountCode> getDiscountCodes() {
+            return discountCodes;
+        }
+
+        public Set<Integer> getDeletedProductIds() {
+            return deletedProductIds;
+        }
+
+        public Set<Integer> getDeletedDiscountCodeIds() {
+            return deletedDiscountCodeIds;
+        }
+    }
+
+    private final Connection connection;
+
+    public CatalogChanges(Connection connection) {
+        this.connection = connection;
+    }
+
+    public long currentVersion() throws SQLException {
+        try (Statement st = connection.createStatement();
+                ResultSet rs = st.executeQuery("SELECT version FROM catalog_version WHERE id = 1")) {
+            return rs.next() ? rs.getLong(1) : 0L;
+        }
+    }
+
+    /**
+     * Runs {@code write} in one transaction with a freshly bumped catalog
+     * version, rolling both back if it fails.
+     */
+    public <T> T stamped(VersionedWrite<T> write) throws SQLException {
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try {
+            T result = write.apply(nextVersion());
+            connection.commit();
+            return result;
+        } catch (SQLException | RuntimeException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    /** Records that a product or discount code was deleted at {@code version}. */
+    public void recordDeletion(String entity, int id, long version) throws SQLException {
+        String sql = "INSERT INTO catalog_deletions (change_version, entity, entity_id) VALUES (?, ?, ?)";
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            ps.setLong(1, version);
+            ps.setString(2, entity);
+            ps.setInt(3, id);
+            ps.executeUpdate();
+        }
+    }
+
+    /**
+     * Everything changed after {@code knownVersion}, or null when nothing did;
+     * the common case costs one primary-key read.
+     */
+    public Delta readSince(long knownVersion) throws SQLException {
+        // Read the version first: rows stamped later may come along, and are fetched again next time
+        long version = currentVersion();
+        if (version <= knownVersion)
+            return null;
+
+        List<Product> products = new ArrayList<>();
+        String productSql = "SELECT id, name, image_name, price, stock, category, version FROM products "
+                + "WHERE change_version > ?";
+        try (PreparedStatement ps = connection.prepareStatement(productSql)) {
+            ps.setLong(1, knownVersion);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    Product p = new Product(rs.getInt("id"), rs.getString("name"), rs.getString("image_name"),
+                            Money.fromDecimal(rs.getBigDecimal("price")), rs.getInt("stock"), Category.fromColumn(rs.getString("category")));
+                    p.setVersion(rs.getInt("version"));
+                    products.add(p);
+                }
+            }
+        }
+
+        List<DiscountCode> codes = new ArrayList<>();
+        String codeSql = "SELECT id, code, discount_percent, usage_count, active FROM discount_codes "
+                + "WHERE change_version > ?";
+        try (PreparedStatement ps = connection.prepareStatement(codeSql)) {
+            ps.setLong(1, knownVersion);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    codes.add(new DiscountCode(rs.getInt("id"), rs.getString("code"), Money.basisPoints(rs.getBigDecimal("discount_percent")),
+                            rs.getInt("usage_count"), rs.getBoolean("active")));
+                }
+            }
+        }
+
+        Set<Integer> deletedProducts = new HashSet<>();
+        Set<Integer> deletedCodes = new HashSet<>();
+        String deletionSql = "SELECT entity, entity_id FROM catalog_deletions WHERE change_version > ?";
+        try (PreparedStatement ps = connection.prepareStatement(deletionSql)) {
+            ps.setLong(1, knownVersion);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    (PRODUCT.equals(rs.getString(1)) ? deletedProducts : deletedCodes).add(rs.getInt(2));
+                }
+            }
+        }
+        return new Delta(version, products, codes, deletedProducts, deletedCodes);
+    }
+
+    private long nextVersion() throws SQLException {
+        try (Statement st = connection.createStatement()) {
+            st.executeUpdate("UPDATE catalog_version SET version = version + 1 WHERE id = 1");
+        }
+        return currentVersion();
+    }
+}
@@ -0,0 +1,308 @@
+package App;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Immutable in-memory search index over a product catalog snapshot.
+ * <ul>
+ * <li>category partitions: positions of the products in each {@link Category}</li>
+ * <li>n-gram name index: every 1-, 2- and 3-character substring of each lower-cased
+ * name maps to the ascending positions of the products containing it; longer
+ * queries intersect their trigram lists and verify the survivors</li>
+ * <li>price-sorted positions for binary-searched price ranges</li>
+ * </ul>
+ * Queries return product ids in catalog order. Instances are safe to query from
+ * any thread; build a new one whenever the catalog changes.
+ */
+public final class CatalogIndex {
+    public static final CatalogIndex EMPTY = new CatalogIndex(List.of());
+
+    private static final int MAX_GRAM = 3;
+    private static final int[] NONE = new int[0];
+
+    private final Product[] products;
+    private final int[] ids;
+    private final String[] lowerNames;
+    private final Category[] categories;
+    private final long[] prices; // cents
+    private final int[][] byCategory;
+    private final Map<String, int[]> grams;
+    private final int[] byPrice;
+    private final long[] sortedPrices;
+    private final Map<Integer, Product> byId;
+
+    public CatalogIndex(List<Product> catalog) {
+        int n = catalog.size();
+        products = catalog.toArray(new Product[0]);
+        ids = new int[n];
+        lowerNames = new String[n];
+        categories = new Category[n];
+        prices = new long[n];
+        byId = new HashMap<>(n * 2);
+
+        int[] categoryCounts = new int[Category.values().length];
+        for (int i = 0; i < n; i++) {
+            Product p = products[i];
+            ids[i] = p.getId();
+            lowerNames[i] = p.getName() == null ? "" : p.getName().toLowerCase(Locale.ROOT);
+            categories[i] = p.getCategory();
+            prices[i] = p.getPriceCents();
+            byId.put(p.getId(), p);
+            if (p.getCategory() != null) {
+                categoryCounts[p.getCategory().ordinal()]++;
+            }
+        }
+
+        byCategory = new int[categoryCounts.length][];
+        for (int c = 0; c < categoryCounts.length; c++) {
+            byCategory[c] = new int[categoryCounts[c]];
+        }
+        int[] fill = new int[categoryCounts.length];
+        for (int i = 0; i < n; i++) {
+            if (categories[i] != null) {
+                int c = categories[i].ordinal();
+                byCategory[c][fill[c]++] = i;
+            }
+        }
+
+        grams = buildGrams(lowerNames);
+
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(prices[a], prices[b]));
+        byPrice = new int[n];
+        sortedPrices = new long[n];
+        for (int i = 0; i < n; i++) {
+            byPrice[i] = order[i];
+            sortedPrices[i] = prices[order[i]];
+        }
+    }
+
+    private static Map<String, int[]> buildGrams(String[] names) {
+        Map<String, IntList> lists = new HashMap<>();
+        for (int pos = 0; pos < names.length; pos++) {
+            String name = names[pos];
+            for (int len = 1; len <= MAX_GRAM; len++) {
+                for (int start = 0; start + len <= name.length(); start++) {
+                    lists.computeIfAbsent(name.substring(start, start + len), k -> new IntList()).addIfLast(pos);
+                }
+            }
+        }
+        Map<String, int[]> result = new HashMap<>(lists.size() * 2);
+        for (Map.Entry<String, IntList> e : lists.entrySet()) {
+            result.put(e.getKey(), e.getValue().toArray());
+        }
+        return result;
+    }
+
+    public int size() {
+        return products.length;
+    }
+
+    public Product get(int id) {
+        return byId.get(id);
+    }
+
+    /** Maps query results back to the product objects, skipping unknown ids. */
+    public List<Product> getProducts(int[] productIds) {
+        List<Product> result = new ArrayList<>(productIds.length);
+        for (int id : productIds) {
+            Product p = byId.get(id);
+            if (p != null) {
+                result.add(p);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param category  null for all categories
+     * @param text      name substring, case-insensitive; empty for any name
+     * @param minPrice  lowest price in cents, inclusive
+     * @param maxPrice  highest price in cents, inclusive
+     * @param fuzzy     when the exact name search finds nothing, fall back to
+     *                  names sharing at least half of the query's trigrams
+     * @return matching product ids in catalog order
+     */
+    public int[] query(Category category, String text, long minPrice, long maxPrice, boolean fuzzy) {
+        String q = text == null ? "" : text.trim().toLowerCase(Locale.ROOT);
+
+        int[] candidates;
+        if (!q.isEmpty()) {
+            candidates = nameCandidates(q);
+            if (candidates.length == 0 && fuzzy) {
+                candidates = fuzzyCandidates(q);
+            }
+        } else if (category != null) {
+            candidates = byCategory[category.ordinal()];
+            if (coversAllPrices(minPrice, maxPrice)) {
+                int[] result = new int[candidates.length];
+                for (int i = 0; i < candidates.length; i++) {
+                    result[i] = ids[candidates[i]];
+                }
+                return result;
+            }
+        } else {
+            return priceRange(minPrice, maxPrice);
+        }
+
+        IntList result = new IntList(Math.min(candidates.length, 256));
+        for (int pos : candidates) {
+            if ((category == null || categories[pos] == category)
+                    && prices[pos] >= minPrice && prices[pos] <= maxPrice) {
+                result.add(ids[pos]);
+            }
+        }
+        return result.toArray();
+    }
+
+    private boolean coversAllPrices(long minPrice, long maxPrice) {
+        return sortedPrices.length == 0
+                || (minPrice <= sortedPrices[0] && maxPrice >= sortedPrices[sortedPrices.length - 1]);
+    }
+
+    private int[] priceRange(long minPrice, long maxPrice) {
+        if (coversAllPrices(minPrice, maxPrice))
+            return ids.clone();
+        int from = lowerBound(minPrice);
+        int to = upperBound(maxPrice);
+        if (from >= to)
+            return NONE;
+        int[] positions = Arrays.copyOfRange(byPrice, from, to);
+        Arrays.sort(positions);
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = ids[positions[i]];
+        }
+        return positions;
+    }
+
+    /** First index in sortedPrices with a price >= value. */
+    private int lowerBound(long value) {
+        int lo = 0;
+        int hi = sortedPrices.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (sortedPrices[mid] < value) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /** First index in sortedPrices with a price > value. */
+    private int upperBound(long value) {
+        int lo = 0;
+        int hi = sortedPrices.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (sortedPrices[mid] <= value) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private int[] nameCandidates(String q) {
+        if (q.length() <= MAX_GRAM) {
+            return grams.getOrDefault(q, NONE);
+        }
+        // Intersect the trigram lists, smallest first, then verify the full substring
+        int[][] lists = new int[q.length() - MAX_GRAM + 1][];
+        for (int i = 0; i < lists.length; i++) {
+            int[] list = grams.get(q.substring(i, i + MAX_GRAM));
+            if (list == null)
+                return NONE;
+            lists[i] = list;
+        }
+        Arrays.sort(lists, (a, b) -> Integer.compare(a.length, b.length));
+
+        // All lists are ascending, so one forward-moving cursor per list is enough
+        int[] cursors = new int[lists.length];
+        IntList result = new IntList(lists[0].length);
+        outer:
+        for (int pos : lists[0]) {
+            for (int i = 1; i < lists.length; i++) {
+                int[] list = lists[i];
+                int c = cursors[i];
+                while (c < list.length && list[c] < pos) {
+                    c++;
+                }
+                cursors[i] = c;
+                if (c == list.length)
+                    break outer;
+                if (list[c] != pos)
+                    continue outer;
+            }
+            if (lowerNames[pos].contains(q)) {
+                result.add(pos);
+            }
+        }
+        return result.toArray();
+    }
+
+    private int[] fuzzyCandidates(String q) {
+        if (q.length() < MAX_GRAM + 1)
+            return NONE;
+        int trigrams = q.length() - MAX_GRAM + 1;
+        int threshold = Math.max(1, (trigrams + 1) / 2);
+        int[] scores = new int[products.length];
+        for (int i = 0; i < trigrams; i++) {
+            int[] list = grams.get(q.substring(i, i + MAX_GRAM));
+            if (list != null) {
+                for (int pos : list) {
+                    scores[pos]++;
+                }
+            }
+        }
+        IntList result = new IntList();
+        for (int pos = 0; pos < scores.length; pos++) {
+            if (scores[pos] >= threshold) {
+                result.add(pos);
+            }
+        }
+        return result.toArray();
+    }
+
+    /** Minimal growable int array, to keep the postings free of boxing. */
+    private static final class IntList {
+        private int[] data;
+        private int size;
+
+        IntList() {
+            this(8);
+        }
+
+        IntList(int capacity) {
+            data = new int[Math.max(capacity, 1)];
+        }
+
+        void add(int value) {
+            if (size == data.length) {
+                data = Arrays.copyOf(data, size * 2);
+            }
+            data[size++] = value;
+        }
+
+        /** Adds {@code value} unless it is already the last element (postings are built in order). */
+        void addIfLast(int value) {
+            if (size == 0 || data[size - 1] != value) {
+                add(value);
+            }
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(data, size);
+        }
+    }
+}
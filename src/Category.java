@@ -2,5 +2,10 @@ package App;
 
 public enum Category {
     DRINK,
-    DESSERT
+    DESSERT;
+
+    /** The category stored in products.category, in any case; anything but a drink is a dessert. */
+    public static Category fromColumn(String value) {
+        return "DRINK".equalsIgnoreCase(value) ? DRINK : DESSERT;
+    }
 }
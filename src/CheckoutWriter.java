@@ -0,0 +1,371 @@
+package App;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Persists a completed order (invoice header + all invoice_items + stock
+ * decrements) in a single transaction. Line items and stock updates each go
+ * through one batched statement so an order costs one commit instead of one
+ * per line. Stock is decremented relatively and only while enough is left, so
+ * two registers selling the same product cannot oversell or lose updates.
+ * The daily, hourly and per-product sales rollups are bumped in the same
+ * transaction, so they always agree with the invoices table.
+ * <p>
+ * Orders taken from the {@link OrderJournal} go through {@link #replay},
+ * which writes each order id at most once and never refuses one for stock.
+ */
+public class CheckoutWriter {
+    private static final Logger LOGGER = Logger.getLogger(CheckoutWriter.class.getName());
+
+    private static final String INSERT_INVOICE =
+            "INSERT INTO invoices (order_id, date_time, total) VALUES (?, NOW(), ?)";
+    // FROM_UNIXTIME renders an instant in the session time zone, as NOW() does for the live path
+    private static final String INSERT_INVOICE_AT =
+            "INSERT INTO invoices (order_id, date_time, total) VALUES (?, FROM_UNIXTIME(?), ?)";
+    private static final String FIND_INVOICE = "SELECT id FROM invoices WHERE order_id = ?";
+    private static final String INSERT_ITEM =
+            "INSERT INTO invoice_items (invoice_id, product_id, product_name, quantity, line_price) VALUES (?, ?, ?, ?, ?)";
+    private static final String DECREMENT_STOCK =
+            "UPDATE products SET stock = stock - ? WHERE id = ? AND stock >= ?";
+    private static final String TAKE_STOCK = "UPDATE products SET stock = stock - ? WHERE id = ?";
+    private static final String LOCK_STOCK = "SELECT id, name, stock FROM products WHERE id IN (%s) ORDER BY id FOR UPDATE";
+    // Read the timestamp back from the invoice row so the rollup buckets match the server clock
+    private static final String ROLLUP_DAILY =
+            "INSERT INTO daily_sales (sale_date, order_count, total) " +
+            "SELECT sale_date, 1, total FROM invoices WHERE id = ? " +
+            "ON DUPLICATE KEY UPDATE order_count = order_count + 1, total = daily_sales.total + VALUES(total)";
+    private static final String ROLLUP_HOURLY =
+            "INSERT INTO hourly_sales (sale_date, sale_hour, order_count, total) " +
+            "SELECT sale_date, HOUR(date_time), 1, total FROM invoices WHERE id = ? " +
+            "ON DUPLICATE KEY UPDATE order_count = order_count + 1, total = hourly_sales.total + VALUES(total)";
+    private static final String ROLLUP_PRODUCT_DAILY =
+            "INSERT INTO product_sales (product_id, variant, sale_date, quantity, revenue) " +
+            "SELECT ?, ?, sale_date, ?, ? FROM invoices WHERE id = ? " +
+            "ON DUPLICATE KEY UPDATE quantity = product_sales.quantity + VALUES(quantity), " +
+            "revenue = product_sales.revenue + VALUES(revenue)";
+    private static final String ROLLUP_PRODUCT_TOTAL =
+            "INSERT INTO product_sales_total (product_id, variant, quantity, revenue) VALUES (?, ?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE quantity = product_sales_total.quantity + VALUES(quantity), " +
+            "revenue = product_sales_total.revenue + VALUES(revenue)";
+
+    /** Thrown when a product no longer has the stock the order reserved; nothing is written. */
+    public static class InsufficientStockException extends SQLException {
+        private static final long serialVersionUID = 1L;
+
+        private final int productId;
+
+        public InsufficientStockException(int productId, String productName) {
+            super("Not enough stock left for " + productName);
+            this.productId = productId;
+        }
+
+        public int getProductId() {
+            return productId;
+        }
+    }
+
+    private final Connection connection;
+
+    public CheckoutWriter(Connection connection) {
+        this.connection = connection;
+    }
+
+    /**
+     * Writes the invoice and its lines and takes the stock atomically.
+     *
+     * @param totalCents      the order total after discount, in cents
+     * @param stockDecrements quantity to take per product id
+     * @return the generated invoice id
+     * @throws InsufficientStockException if a product ran out in the meantime
+     * @throws SQLException if anything fails; the transaction is rolled back first
+     */
+    public int write(String orderId, long totalCents, List<OrderLine> lines, Map<Integer, Integer> stockDecrements)
+            throws SQLException {
+        long start = System.nanoTime();
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try {
+            int invoiceId = insertInvoice(orderId, null, totalCents);
+            insertItems(invoiceId, lines, Set.of());
+            decrementStock(stockDecrements, lines);
+            updateSalesRollups(invoiceId);
+            updateProductSales(invoiceId, lines);
+            connection.commit();
+
+            // The checkout latency is recorded by the db.checkout timer; this is for debugging only
+            long elapsedMicros = (System.nanoTime() - start) / 1_000;
+            LOGGER.fine(() -> String.format("Persisted order %s (%d lines) in %.2f ms",
+                    orderId, lines.size(), elapsedMicros / 1_000.0));
+            return invoiceId;
+        } catch (SQLException e) {
+            rollbackQuietly(e);
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    /**
+     * Writes an order from the journal, dated when it was sold. If an invoice
+     * with its order id exists already, nothing is written and that invoice's
+     * id is returned. The sale has already happened at the register, so it is
+     * never refused for lack of stock: stock is taken down to zero at most,
+     * and any quantity beyond what was left is logged as a shortfall for a
+     * stock count to correct. Lines of products deleted since keep a NULL
+     * product_id and leave stock and the per-product rollups alone.
+     *
+     * @return the id of the invoice holding the order
+     * @throws SQLException if anything fails; the transaction is rolled back first
+     */
+    public int replay(OrderJournal.Entry entry) throws SQLException {
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try {
+            Integer existing = findInvoice(entry.getOrderId());
+            if (existing != null) {
+                connection.commit();
+                return existing;
+            }
+            List<OrderLine> lines = entry.getLines();
+            Set<Integer> missing = missingProducts(lines);
+            List<OrderLine> known = new ArrayList<>();
+            for (OrderLine line : lines) {
+                if (!missing.contains(line.getProductId())) {
+                    known.add(line);
+                }
+            }
+            int invoiceId = insertInvoice(entry.getOrderId(), entry.getSoldAt(), entry.getTotalCents());
+            insertItems(invoiceId, lines, missing);
+            takeStock(entry.getOrderId(), known);
+            updateSalesRollups(invoiceId);
+            updateProductSales(invoiceId, known);
+            connection.commit();
+            return invoiceId;
+        } catch (SQLException e) {
+            rollbackQuietly(e);
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    private Integer findInvoice(String orderId) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement(FIND_INVOICE)) {
+            ps.setString(1, orderId);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : null;
+            }
+        }
+    }
+
+    /** Ids of the lines' products that no longer exist. */
+    private Set<Integer> missingProducts(List<OrderLine> lines) throws SQLException {
+        Set<Integer> missing = new HashSet<>();
+        for (OrderLine line : lines) {
+            missing.add(line.getProductId());
+        }
+        if (missing.isEmpty())
+            return missing;
+        String sql = "SELECT id FROM products WHERE id IN ("
+                + String.join(", ", Collections.nCopies(missing.size(), "?")) + ")";
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            int i = 1;
+            for (Integer id : missing) {
+                ps.setInt(i++, id);
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    missing.remove(rs.getInt(1));
+                }
+            }
+        }
+        return missing;
+    }
+
+    /** Takes the lines' stock, but no more than is left; a shortfall is logged, not refused. */
+    private void takeStock(String orderId, List<OrderLine> lines) throws SQLException {
+        Map<Integer, Integer> quantities = new TreeMap<>();
+        for (OrderLine line : lines) {
+            quantities.merge(line.getProductId(), line.getQuantity(), Integer::sum);
+        }
+        if (quantities.isEmpty())
+            return;
+        // Lock in id order like decrementStock, so a replay and a live checkout cannot deadlock
+        Map<Integer, Integer> taken = new TreeMap<>();
+        String sql = String.format(LOCK_STOCK, String.join(", ", Collections.nCopies(quantities.size(), "?")));
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            int i = 1;
+            for (Integer id : quantities.keySet()) {
+                ps.setInt(i++, id);
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    int productId = rs.getInt("id");
+                    int wanted = quantities.get(productId);
+                    int available = Math.max(rs.getInt("stock"), 0);
+                    if (wanted > available) {
+                        LOGGER.warning("Replayed order " + orderId + " sold " + wanted + " of "
+                                + rs.getString("name") + " (id " + productId + ") with only " + available
+                                + " in stock; stock set to 0, shortfall " + (wanted - available));
+                    }
+                    if (Math.min(wanted, available) > 0) {
+                        taken.put(productId, Math.min(wanted, available));
+                    }
+                }
+            }
+        }
+        if (taken.isEmpty())
+            return;
+        try (PreparedStatement ps = connection.prepareStatement(TAKE_STOCK)) {
+            for (Map.Entry<Integer, Integer> entry : taken.entrySet()) {
+                ps.setInt(1, entry.getValue());
+                ps.setInt(2, entry.getKey());
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+    }
+
+    /** @param soldAt null to date the invoice by the database clock */
+    private int insertInvoice(String orderId, Instant soldAt, long totalCents) throws SQLException {
+        String sql = soldAt == null ? INSERT_INVOICE : INSERT_INVOICE_AT;
+        try (PreparedStatement ps = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+            ps.setString(1, orderId);
+            if (soldAt == null) {
+                ps.setBigDecimal(2, Money.toDecimal(totalCents));
+            } else {
+                ps.setLong(2, soldAt.getEpochSecond());
+                ps.setBigDecimal(3, Money.toDecimal(totalCents));
+            }
+            ps.executeUpdate();
+            try (ResultSet rs = ps.getGeneratedKeys()) {
+                if (rs.next()) {
+                    return rs.getInt(1);
+                }
+            }
+        }
+        throw new SQLException("No invoice id generated for order " + orderId);
+    }
+
+    /** @param missingProductIds products that no longer exist; their lines get a NULL product_id */
+    private void insertItems(int invoiceId, List<OrderLine> lines, Set<Integer> missingProductIds) throws SQLException {
+        if (lines.isEmpty())
+            return;
+        try (PreparedStatement ps = connection.prepareStatement(INSERT_ITEM)) {
+            for (OrderLine line : lines) {
+                ps.setInt(1, invoiceId);
+                if (missingProductIds.contains(line.getProductId())) {
+                    ps.setNull(2, Types.INTEGER);
+                } else {
+                    ps.setInt(2, line.getProductId());
+                }
+                ps.setString(3, line.getDisplayName());
+                ps.setInt(4, line.getQuantity());
+                ps.setBigDecimal(5, Money.toDecimal(line.getLinePriceCents()));
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+    }
+
+    private void decrementStock(Map<Integer, Integer> stockDecrements, List<OrderLine> lines) throws SQLException {
+        if (stockDecrements.isEmpty())
+            return;
+        // Lock the product rows in id order so concurrent checkouts cannot deadlock on each other
+        Integer[] productIds = stockDecrements.keySet().toArray(new Integer[0]);
+        Arrays.sort(productIds);
+        try (PreparedStatement ps = connection.prepareStatement(DECREMENT_STOCK)) {
+            for (Integer productId : productIds) {
+                int quantity = stockDecrements.get(productId);
+                ps.setInt(1, quantity);
+                ps.setInt(2, productId);
+                ps.setInt(3, quantity);
+                ps.addBatch();
+            }
+            int[] counts = ps.executeBatch();
+            for (int i = 0; i < counts.length; i++) {
+                // Connector/J sends a rewritten UPDATE batch as one multi-statement round trip
+                // and still reports the count of every statement
+                if (counts[i] == 0) {
+                    throw new InsufficientStockException(productIds[i], productName(productIds[i], lines));
+                }
+            }
+        }
+    }
+
+    private void updateSalesRollups(int invoiceId) throws SQLException {
+        try (PreparedStatement daily = connection.prepareStatement(ROLLUP_DAILY);
+                PreparedStatement hourly = connection.prepareStatement(ROLLUP_HOURLY)) {
+            daily.setInt(1, invoiceId);
+            daily.executeUpdate();
+            hourly.setInt(1, invoiceId);
+            hourly.executeUpdate();
+        }
+    }
+
+    private void updateProductSales(int invoiceId, List<OrderLine> lines) throws SQLException {
+        if (lines.isEmpty())
+            return;
+        try (PreparedStatement daily = connection.prepareStatement(ROLLUP_PRODUCT_DAILY);
+                PreparedStatement total = connection.prepareStatement(ROLLUP_PRODUCT_TOTAL)) {
+            for (OrderLine line : lines) {
+                String variant = variantKey(line.getVariant());
+                daily.setInt(1, line.getProductId());
+                daily.setString(2, variant);
+                BigDecimal linePrice = Money.toDecimal(line.getLinePriceCents());
+                daily.setInt(3, line.getQuantity());
+                daily.setBigDecimal(4, linePrice);
+                daily.setInt(5, invoiceId);
+                daily.addBatch();
+
+                total.setInt(1, line.getProductId());
+                total.setString(2, variant);
+                total.setInt(3, line.getQuantity());
+                total.setBigDecimal(4, linePrice);
+                total.addBatch();
+            }
+            daily.executeBatch();
+            total.executeBatch();
+        }
+    }
+
+    /** Value stored in product_sales.variant; products without hot/cold options use an empty string. */
+    static String variantKey(Variant variant) {
+        return variant == null ? "" : variant.name();
+    }
+
+    private static String productName(int productId, List<OrderLine> lines) {
+        for (OrderLine line : lines) {
+            if (line.getProductId() == productId) {
+                return line.getProductName();
+            }
+        }
+        return "product " + productId;
+    }
+
+    private void rollbackQuietly(SQLException cause) {
+        try {
+            connection.rollback();
+        } catch (SQLException e) {
+            cause.addSuppressed(e);
+            LOGGER.log(Level.WARNING, "Rollback failed", e);
+        }
+    }
+}
@@ -1,6 +1,14 @@
 package App;
 
+import javafx.animation.Animation;
+import javafx.animation.KeyFrame;
+import javafx.animation.PauseTransition;
+import javafx.animation.Timeline;
 import javafx.application.Application;
+import javafx.application.Platform;
+import javafx.beans.property.BooleanProperty;
+import javafx.beans.property.IntegerProperty;
+import javafx.beans.property.SimpleBooleanProperty;
 import javafx.beans.property.SimpleDoubleProperty;
 import javafx.beans.property.SimpleIntegerProperty;
 import javafx.beans.property.SimpleObjectProperty;
@@ -19,16 +27,21 @@ import javafx.scene.input.TransferMode;
 import javafx.scene.layout.*;
 import javafx.stage.FileChooser;
 import javafx.stage.Stage;
+import javafx.util.Duration;
 
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.sql.*;
-import java.text.SimpleDateFormat;
 import java.util.*;
-import java.util.Date;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -47,39 +60,117 @@ public class CoffeeOrderApp extends Application {
     private TextField searchField;
     private TextField minPriceField;
     private TextField maxPriceField;
-    private GridPane productGrid;
-    private ListView<String> invoiceList;
+    private ProductGridView productGrid;
+    private ListView<OrderLine> invoiceList;
     private Label totalProductsLabel;
     private Label totalPriceLabel;
-    private int totalProducts = 0;
-    private double totalPrice = 0.0;
+    private final StringBuilder totalPriceText = new StringBuilder(32);
     private Category currentCategory = null;
     private List<Product> products = new ArrayList<>();
-    private List<DiscountCode> discountCodesFromDB = new ArrayList<>();
-    private double activeDiscountPercent = 0.0;
+    private volatile CatalogIndex catalogIndex = CatalogIndex.EMPTY;
+    private final ExecutorService searchExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "catalog-search");
+        t.setDaemon(true);
+        return t;
+    });
+    private final PauseTransition searchDebounce = new PauseTransition(Duration.millis(150));
+    private long searchSeq = 0;
+    private final DiscountCodeIndex discountCodes = new DiscountCodeIndex();
+    private final Timeline discountUsageFlush =
+            new Timeline(new KeyFrame(Duration.seconds(30), e -> flushDiscountUsage()));
+    // Picks up other registers' admin edits; see CatalogChanges
+    private final Timeline catalogPoll = new Timeline(
+            new KeyFrame(Duration.seconds(Integer.getInteger("coffee.catalog.pollSec", 5)), e -> pollCatalogChanges()));
+    private long catalogVersion;
+    // Completes on the FX thread once the catalog is in the caches; started before login
+    private CompletableFuture<Void> catalogReady;
+    private boolean catalogPollInFlight;
     private TableView<Product> inventoryTable;
 
-    private Connection connection;
+    private final MetricsRegistry metrics = new MetricsRegistry();
+    private MetricsExporter metricsExporter;
+    private StartupTimeline startupTimeline;
+    private FxStallWatchdog fxWatchdog;
+    private DataAccess dataAccess;
+    private CompletableFuture<Integer> schemaReady = CompletableFuture.completedFuture(0);
+    private final IntegerProperty pendingDbTasks = new SimpleIntegerProperty(0);
+    private final BooleanProperty checkoutInProgress = new SimpleBooleanProperty(false);
+    private OrderJournal orderJournal;
+    private JournalReplayer journalReplayer;
+    private OrderService orderService;
+    private Cart cart;
+    private final PauseTransition reservationTimeout =
+            new PauseTransition(Duration.minutes(Integer.getInteger("coffee.reservationTimeoutMin", 15)));
     private static final String IMAGES_DIR = "build/classes/App/images";
+    private static final int DAILY_SALES_REPORT_DAYS = 366;
+    private static final int TOP_PRODUCTS_LIMIT = 10;
+    private static final int LOW_STOCK_THRESHOLD = 5;
+    private final ImageCache imageCache = new ImageCache(IMAGES_DIR, 256);
+    private final SceneCache screens = new SceneCache(Integer.getInteger("coffee.ui.cachedScreens", 3), metrics);
 
     // -------------------------------------------------
     // 3. Application Start and Global Exception Handler
     // -------------------------------------------------
     @Override
     public void start(Stage primaryStage) {
+        reservationTimeout.setOnFinished(e -> releaseAbandonedOrder());
+        discountUsageFlush.setCycleCount(Animation.INDEFINITE);
+        discountUsageFlush.play();
+        catalogPoll.setCycleCount(Animation.INDEFINITE);
+        startMonitoring();
+        initDatabase();
+        preload(primaryStage);
+        createImagesDirIfNeeded();
         showLoginScreen(primaryStage);
     }
 
+    @Override
+    public void stop() {
+        discountUsageFlush.stop();
+        catalogPoll.stop();
+        if (dataAccess != null && discountCodes.hasPendingUsage()) {
+            Map<Integer, Integer> usage = discountCodes.drainPendingUsage();
+            try {
+                dataAccess.call("flushDiscountUsage", conn -> flushDiscountUsageToDB(conn, usage));
+            } catch (SQLException e) {
+                LOGGER.log(Level.WARNING, "Failed to flush discount usage on exit: " + usage, e);
+            }
+        }
+        if (journalReplayer != null) {
+            journalReplayer.close();
+        }
+        if (orderJournal != null) {
+            orderJournal.close();
+        }
+        if (fxWatchdog != null) {
+            fxWatchdog.close();
+        }
+        if (metricsExporter != null) {
+            metricsExporter.close();
+        }
+        if (dataAccess != null) {
+            dataAccess.close();
+        }
+        searchExecutor.shutdownNow();
+    }
+
     public static void main(String[] args) {
         // Set a global uncaught exception handler
         Thread.setDefaultUncaughtExceptionHandler((thread, throwable) -> {
             LOGGER.log(Level.SEVERE, "Uncaught Exception in thread " + thread.getName(), throwable);
-            // Optionally, show an error alert:
-            Alert alert = new Alert(AlertType.ERROR);
-            alert.setTitle("Unexpected Error");
-            alert.setHeaderText(null);
-            alert.setContentText("An unexpected error occurred: " + throwable.getMessage());
-            alert.showAndWait();
+            // Optionally, show an error alert (alerts may only be created on the FX thread):
+            Runnable showAlert = () -> {
+                Alert alert = new Alert(AlertType.ERROR);
+                alert.setTitle("Unexpected Error");
+                alert.setHeaderText(null);
+                alert.setContentText("An unexpected error occurred: " + throwable.getMessage());
+                alert.showAndWait();
+            };
+            if (Platform.isFxApplicationThread()) {
+                showAlert.run();
+            } else {
+                Platform.runLater(showAlert);
+            }
         });
         launch(args);
     }
@@ -97,6 +188,7 @@ public class CoffeeOrderApp extends Application {
 
     private void showError(String title, String msg, Exception ex) {
         LOGGER.log(Level.SEVERE, msg, ex);
+        metrics.counter("ui.errors").increment();
         Alert alert = new Alert(AlertType.ERROR);
         alert.setTitle(title);
         alert.setHeaderText(null);
@@ -104,6 +196,39 @@ public class CoffeeOrderApp extends Application {
         alert.showAndWait();
     }
 
+    /**
+     * Runs {@code work} on the data-access executor and hands the result to
+     * {@code onSuccess} back on the FX thread. Failures are reported with
+     * {@link #showError}, prefixed by {@code errorMsg}.
+     */
+    private <T> void runDb(String name, DataAccess.SqlFunction<T> work, Consumer<T> onSuccess, String errorMsg) {
+        whenDbDone(dataAccess.submit(name, work), onSuccess, errorMsg);
+    }
+
+    private <T> void whenDbDone(CompletableFuture<T> future, Consumer<T> onSuccess, String errorMsg) {
+        pendingDbTasks.set(pendingDbTasks.get() + 1);
+        future.whenComplete((result, failure) -> Platform.runLater(() -> {
+            pendingDbTasks.set(pendingDbTasks.get() - 1);
+            if (failure != null) {
+                Throwable cause = failure instanceof CompletionException && failure.getCause() != null
+                        ? failure.getCause()
+                        : failure;
+                Exception ex = cause instanceof Exception ? (Exception) cause : new Exception(cause);
+                showError("DB Error", errorMsg + ": " + cause.getMessage(), ex);
+            } else if (onSuccess != null) {
+                onSuccess.accept(result);
+            }
+        }));
+    }
+
+    private ProgressIndicator createBusyIndicator() {
+        ProgressIndicator indicator = new ProgressIndicator();
+        indicator.getStyleClass().add("busy-indicator");
+        indicator.setPrefSize(24, 24);
+        indicator.visibleProperty().bind(pendingDbTasks.greaterThan(0));
+        return indicator;
+    }
+
     // -------------------------------------------------
     // 5. Login Screen
     // -------------------------------------------------
@@ -127,37 +252,38 @@ public class CoffeeOrderApp extends Application {
 
         Button loginBtn = new Button("Login");
         loginBtn.getStyleClass().add("action-button");
+        loginBtn.disableProperty().bind(pendingDbTasks.greaterThan(0));
         loginBtn.setOnAction(e -> {
             String user = userField.getText().trim();
             String pass = passField.getText().trim();
 
-            Role loginResult = validateLoginFromDB(user, pass);
-            if (loginResult != null) {
-                currentUserRole = loginResult;
-                if (connection == null) {
-                    initDatabase();
-                    createImagesDirIfNeeded();
+            msgLabel.setText("");
+            runDb("login", conn -> validateLoginFromDB(conn, user, pass), loginResult -> {
+                if (loginResult != null) {
+                    currentUserRole = loginResult;
+                    startupTimeline.mark(StartupTimeline.LOGGED_IN);
+                    // Normally loaded while the login screen was shown; retried here if that failed
+                    if (catalogReady.isCompletedExceptionally()) {
+                        catalogReady = loadCatalogFromDB();
+                    }
+                    whenDbDone(catalogReady, v -> showOrderScene(stage), "Failed to load products and discount codes");
+                } else {
+                    msgLabel.setText("Invalid credentials!");
                 }
-                loadProductsFromDB();
-                loadDiscountCodesFromDB();
-                showOrderScene(stage);
-            } else {
-                msgLabel.setText("Invalid credentials!");
-            }
+            }, "Error validating login");
         });
 
         loginLayout.getChildren().addAll(
-                title, userLabel, userField, passLabel, passField, loginBtn, msgLabel);
+                title, userLabel, userField, passLabel, passField, loginBtn, createBusyIndicator(), msgLabel);
 
-        Scene scene = new Scene(loginLayout, 320, 250);
-        scene.getStylesheets().add(getClass().getResource("/App/coffee_style.css").toExternalForm());
+        Scene scene = screens.newScene(loginLayout, 320, 250);
         stage.setTitle("Login");
         stage.setScene(scene);
         stage.show();
+        startupTimeline.mark(StartupTimeline.LOGIN_SHOWN);
     }
 
-    private Role validateLoginFromDB(String username, String password) {
-        initDatabase();
+    private Role validateLoginFromDB(Connection connection, String username, String password) throws SQLException {
         String sql = "SELECT password, role FROM users WHERE username = ?";
         try (PreparedStatement ps = connection.prepareStatement(sql)) {
             ps.setString(1, username);
@@ -169,8 +295,6 @@ public class CoffeeOrderApp extends Application {
                     return Role.valueOf(dbRole);
                 }
             }
-        } catch (SQLException e) {
-            showError("Database Error", "Error validating login.", e);
         }
         return null;
     }
@@ -179,16 +303,81 @@ public class CoffeeOrderApp extends Application {
     // 6. Database Initialization
     // -------------------------------------------------
     private void initDatabase() {
-        if (connection != null)
+        if (dataAccess != null)
             return;
+        // Adjust to your actual DB credentials, or override them with -Dcoffee.db.url=... etc.
+        // Connections are opened lazily by the pool, off the FX thread.
+        String url = System.getProperty("coffee.db.url",
+                "jdbc:mysql://localhost:3306/CoffeeOrderDB?useSSL=false&serverTimezone=UTC&rewriteBatchedStatements=true");
+        String user = System.getProperty("coffee.db.user", "root");
+        String password = System.getProperty("coffee.db.password", "root");
+        int poolSize = Integer.getInteger("coffee.db.poolSize", 4);
+
+        ConnectionPool pool = new ConnectionPool(url, user, password, poolSize);
+        pool.setBorrowTimeoutMillis(Long.getLong("coffee.db.borrowTimeoutMs", 5_000L));
+        pool.setIdleTimeoutMillis(Long.getLong("coffee.db.idleTimeoutMs", 5 * 60_000L));
+        pool.setLeakThresholdMillis(Long.getLong("coffee.db.leakThresholdMs", 30_000L));
+        pool.setCaptureBorrowerStacks(Boolean.getBoolean("coffee.db.leakStackTraces"));
+        dataAccess = new DataAccess(pool, metrics);
+        openOrderJournal();
+        orderService = new OrderService(dataAccess, discountCodes, id -> catalogIndex.get(id), orderJournal);
+        cart = orderService.newCart();
+
+        if (Boolean.parseBoolean(System.getProperty("coffee.db.migrate", "true"))) {
+            Path migrations = Paths.get(System.getProperty("coffee.db.migrations", "sql/migrations"));
+            schemaReady = dataAccess.submit("migrateSchema", conn -> new SchemaMigrator(conn, migrations).migrate());
+        }
+        if (journalReplayer != null) {
+            schemaReady.whenComplete((v, failure) -> journalReplayer.start());
+        }
+    }
+
+    /**
+     * Completed orders go to a local journal first and are written to the
+     * database in the background, so checkout keeps working while the
+     * database is slow or down. Without the journal, checkout writes directly.
+     */
+    private void openOrderJournal() {
+        Path dir = Paths.get(System.getProperty("coffee.journal.dir", "journal"));
+        int segmentBytes = Integer.getInteger("coffee.journal.segmentMb", 8) * 1024 * 1024;
+        long flushMillis = Long.getLong("coffee.journal.flushMs", 5L);
         try {
-            // Adjust to your actual DB credentials
-            String url = "jdbc:mysql://localhost:3306/CoffeeOrderDB?useSSL=false&serverTimezone=UTC";
-            String user = "root";
-            String password = "root";
-            connection = DriverManager.getConnection(url, user, password);
-        } catch (SQLException e) {
-            showError("Database Error", "Cannot connect to the database.\n" + e.getMessage(), e);
+            orderJournal = new OrderJournal(dir, segmentBytes, flushMillis, metrics);
+            journalReplayer = new JournalReplayer(orderJournal, dataAccess);
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Order journal unavailable; checkout will wait for the database", e);
+        }
+    }
+
+    /**
+     * Stock this register holds back from what the database shows: the open
+     * order's reservations plus journaled orders not yet written.
+     */
+    private Map<Integer, Integer> heldStock() {
+        Map<Integer, Integer> held = cart.getReserved();
+        if (orderJournal != null) {
+            orderJournal.getPendingStock().forEach((id, qty) -> held.merge(id, qty, Integer::sum));
+        }
+        return held;
+    }
+
+    /**
+     * Publishes the metrics over JMX and appends them to a local file every
+     * interval, and starts the FX stall watchdog and the startup timeline,
+     * which report into the same folder; -Dcoffee.register names this
+     * register in all of them.
+     */
+    private void startMonitoring() {
+        String register = System.getProperty("coffee.register", System.getenv().getOrDefault("HOSTNAME", "register"));
+        Path dir = Paths.get(System.getProperty("coffee.metrics.dir", "metrics"));
+        startupTimeline = new StartupTimeline(metrics, register, dir);
+        metricsExporter = new MetricsExporter(metrics, register, dir);
+        metricsExporter.start(Long.getLong("coffee.metrics.intervalSec", 60L));
+
+        long stallThresholdMs = Long.getLong("coffee.fxWatchdog.thresholdMs", 500L);
+        if (stallThresholdMs > 0) {
+            fxWatchdog = new FxStallWatchdog(metrics, register, dir, stallThresholdMs);
+            fxWatchdog.start();
         }
     }
 
@@ -205,12 +394,154 @@ public class CoffeeOrderApp extends Application {
     // -------------------------------------------------
     // 7. Load Products & Discount Codes from DB
     // -------------------------------------------------
-    private void loadProductsFromDB() {
-        products.clear();
-        if (connection == null)
+    /**
+     * Opens a connection and loads the catalog, discount codes and product
+     * images while the login screen is shown, so that logging in opens the
+     * order screen without waiting for the database.
+     */
+    private void preload(Stage stage) {
+        dataAccess.submit("connect", conn -> conn.isValid(5))
+                .thenRun(() -> startupTimeline.mark(StartupTimeline.DB_CONNECTED));
+        catalogReady = loadCatalogFromDB();
+        catalogReady.whenComplete((v, failure) -> {
+            if (failure != null) {
+                LOGGER.log(Level.WARNING, "Catalog preload failed; it is loaded again at login", failure);
+            }
+            if (Boolean.getBoolean("coffee.startup.trainingRun")) {
+                Platform.runLater(() -> finishTrainingRun(stage, failure == null));
+            }
+        });
+    }
+
+    /**
+     * With -Dcoffee.startup.trainingRun=true the app opens the order screen
+     * as a cashier once the catalog is loaded, then exits. Run with
+     * -XX:ArchiveClassesAtExit, this records the classes a normal start
+     * loads into an AppCDS archive (see packaging/build-runtime.sh).
+     */
+    private void finishTrainingRun(Stage stage, boolean catalogLoaded) {
+        if (catalogLoaded) {
+            currentUserRole = Role.CASHIER;
+            showOrderScene(stage);
+        }
+        PauseTransition settle = new PauseTransition(Duration.seconds(2));
+        settle.setOnFinished(e -> Platform.exit());
+        settle.play();
+    }
+
+    /**
+     * Loads products and discount codes into the caches and starts decoding
+     * the product images. The returned future completes on the FX thread
+     * once the caches are filled.
+     */
+    private CompletableFuture<Void> loadCatalogFromDB() {
+        // Nothing reads the tables before pending schema migrations have run. The catalog
+        // version is read first, so edits made during the load are fetched again by the poll.
+        CompletableFuture<Long> versionFuture = schemaReady.thenCompose(
+                v -> dataAccess.submit("catalogVersion", conn -> new CatalogChanges(conn).currentVersion()));
+        CompletableFuture<List<Product>> productsFuture =
+                versionFuture.thenCompose(v -> dataAccess.submit("loadProducts", this::readProductsFromDB));
+        CompletableFuture<CatalogIndex> indexFuture = productsFuture.thenApply(CatalogIndex::new);
+        CompletableFuture<List<DiscountCode>> codesFuture =
+                versionFuture.thenCompose(v -> dataAccess.submit("loadDiscountCodes", this::readDiscountCodesFromDB));
+        CompletableFuture<Void> ready = new CompletableFuture<>();
+        CompletableFuture.allOf(indexFuture, codesFuture).whenComplete((v, failure) -> Platform.runLater(() -> {
+            if (failure != null) {
+                ready.completeExceptionally(failure);
+                return;
+            }
+            Map<Integer, Integer> held = heldStock();
+            for (Product p : productsFuture.join()) {
+                p.setStock(p.getStock() - held.getOrDefault(p.getId(), 0));
+            }
+            products.clear();
+            products.addAll(productsFuture.join());
+            catalogIndex = indexFuture.join();
+            discountCodes.replaceAll(codesFuture.join());
+            catalogVersion = versionFuture.join();
+            catalogPoll.play();
+            // Decoding starts in the background; the order screen finds them in the cache
+            for (Product p : products) {
+                imageCache.get(p.getImageName(), ProductTile.IMAGE_SIZE, ProductTile.IMAGE_SIZE);
+            }
+            startupTimeline.mark(StartupTimeline.CATALOG_LOADED);
+            ready.complete(null);
+        }));
+        return ready;
+    }
+
+    /** Fetches the products and codes changed since {@link #catalogVersion}; one cheap read if none did. */
+    private void pollCatalogChanges() {
+        if (dataAccess == null || catalogPollInFlight)
             return;
+        catalogPollInFlight = true;
+        long known = catalogVersion;
+        dataAccess.submit("pollCatalog", conn -> new CatalogChanges(conn).readSince(known))
+                .whenComplete((delta, failure) -> Platform.runLater(() -> {
+                    catalogPollInFlight = false;
+                    if (failure != null) {
+                        LOGGER.log(Level.WARNING, "Catalog poll failed, will retry", failure);
+                    } else if (delta != null && delta.getVersion() > catalogVersion) {
+                        applyCatalogChanges(delta);
+                    }
+                }));
+    }
 
-        String sql = "SELECT id, name, image_name, price, stock, category FROM products";
+    /**
+     * Applies changed rows to the local caches in place. Stock read from the
+     * database is reduced by what this register holds (see {@link #heldStock}).
+     */
+    private void applyCatalogChanges(CatalogChanges.Delta delta) {
+        Map<Integer, Product> byId = new HashMap<>();
+        for (Product p : products) {
+            byId.put(p.getId(), p);
+        }
+        Map<Integer, Integer> reserved = heldStock();
+        for (Product fresh : delta.getProducts()) {
+            Product existing = byId.get(fresh.getId());
+            if (existing == null) {
+                fresh.setStock(fresh.getStock() - reserved.getOrDefault(fresh.getId(), 0));
+                products.add(fresh);
+            } else {
+                refreshProduct(existing, fresh, reserved);
+            }
+        }
+        products.removeIf(p -> delta.getDeletedProductIds().contains(p.getId()));
+        for (DiscountCode dc : delta.getDiscountCodes()) {
+            discountCodes.refresh(dc);
+        }
+        delta.getDeletedDiscountCodeIds().forEach(discountCodes::remove);
+        catalogVersion = delta.getVersion();
+
+        if (!delta.getProducts().isEmpty() || !delta.getDeletedProductIds().isEmpty()) {
+            rebuildCatalogIndex();
+            if (inventoryTable != null) {
+                inventoryTable.getItems().setAll(products);
+            }
+        }
+        LOGGER.info("Applied catalog version " + catalogVersion + ": " + delta.getProducts().size()
+                + " product(s), " + delta.getDiscountCodes().size() + " discount code(s) changed, "
+                + (delta.getDeletedProductIds().size() + delta.getDeletedDiscountCodeIds().size()) + " deleted");
+    }
+
+    /** Copies a product read from the database into the cached one, less the stock this register holds. */
+    private void refreshProduct(Product existing, Product fresh, Map<Integer, Integer> reserved) {
+        if (!Objects.equals(existing.getImageName(), fresh.getImageName())) {
+            imageCache.invalidate(fresh.getImageName());
+        }
+        synchronized (existing) {
+            existing.setName(fresh.getName());
+            existing.setImageName(fresh.getImageName());
+            existing.setPriceCents(fresh.getPriceCents());
+            existing.setCategory(fresh.getCategory());
+            existing.setStock(fresh.getStock() - reserved.getOrDefault(fresh.getId(), 0));
+            existing.setVersion(fresh.getVersion());
+        }
+    }
+
+    private List<Product> readProductsFromDB(Connection connection) throws SQLException {
+        List<Product> loaded = new ArrayList<>();
+        String sql = "SELECT id, name, image_name, price, stock, category, version FROM products";
         try (Statement stmt = connection.createStatement();
                 ResultSet rs = stmt.executeQuery(sql)) {
 
@@ -218,25 +549,20 @@ public class CoffeeOrderApp extends Application {
                 int id = rs.getInt("id");
                 String name = rs.getString("name");
                 String imageName = rs.getString("image_name");
-                double price = rs.getDouble("price");
+                long priceCents = Money.fromDecimal(rs.getBigDecimal("price"));
                 int stock = rs.getInt("stock");
-                String catStr = rs.getString("category");
-                Category category = catStr.equalsIgnoreCase("DRINK") ? Category.DRINK : Category.DESSERT;
+                Category category = Category.fromColumn(rs.getString("category"));
 
-                Product p = new Product(id, name, imageName, price, stock, category);
-                products.add(p);
+                Product p = new Product(id, name, imageName, priceCents, stock, category);
+                p.setVersion(rs.getInt("version"));
+                loaded.add(p);
             }
-
-        } catch (SQLException e) {
-            showError("DB Error", "Failed to load products: " + e.getMessage(), e);
         }
+        return loaded;
     }
 
-    private void loadDiscountCodesFromDB() {
-        discountCodesFromDB.clear();
-        if (connection == null)
-            return;
-
+    private List<DiscountCode> readDiscountCodesFromDB(Connection connection) throws SQLException {
+        List<DiscountCode> loaded = new ArrayList<>();
         String sql = "SELECT id, code, discount_percent, usage_count, active FROM discount_codes";
         try (Statement stmt = connection.createStatement();
                 ResultSet rs = stmt.executeQuery(sql)) {
@@ -244,21 +570,29 @@ public class CoffeeOrderApp extends Application {
             while (rs.next()) {
                 int id = rs.getInt("id");
                 String code = rs.getString("code");
-                double percent = rs.getDouble("discount_percent");
+                int basisPoints = Money.basisPoints(rs.getBigDecimal("discount_percent"));
                 int usage = rs.getInt("usage_count");
                 boolean active = rs.getBoolean("active");
-                DiscountCode d = new DiscountCode(id, code, percent, usage, active);
-                discountCodesFromDB.add(d);
+                DiscountCode d = new DiscountCode(id, code, basisPoints, usage, active);
+                loaded.add(d);
             }
-        } catch (SQLException e) {
-            showError("DB Error", "Failed to load discount codes.", e);
         }
+        return loaded;
     }
 
     // -------------------------------------------------
     // 8. Main Order Scene
     // -------------------------------------------------
+    /** The order screen is built once per role and kept; later visits only repaint the product tiles. */
     private void showOrderScene(Stage stage) {
+        String key = "orders." + currentUserRole;
+        screens.pin(key);
+        screens.show(stage, key, "Coffee Order App (" + currentUserRole + ")",
+                () -> new SceneCache.Screen(buildOrderScene(stage), () -> productGrid.refresh()));
+        startupTimeline.mark(StartupTimeline.ORDER_SCREEN_SHOWN);
+    }
+
+    private Scene buildOrderScene(Stage stage) {
         BorderPane orderLayout = new BorderPane();
 
         // Left sidebar
@@ -302,6 +636,7 @@ public class CoffeeOrderApp extends Application {
         searchField.setPromptText("Search...");
         searchField.getStyleClass().add("text-field");
         searchField.setOnAction(e -> refreshProductGrid());
+        searchField.textProperty().addListener((obs, oldVal, newVal) -> searchDebounce.playFromStart());
 
         minPriceField = new TextField();
         minPriceField.setPromptText("Min Price");
@@ -311,6 +646,11 @@ public class CoffeeOrderApp extends Application {
         maxPriceField.setPromptText("Max Price");
         maxPriceField.setPrefWidth(80);
 
+        // Search as the user types, once they pause
+        searchDebounce.setOnFinished(e -> refreshProductGrid());
+        minPriceField.textProperty().addListener((obs, oldVal, newVal) -> searchDebounce.playFromStart());
+        maxPriceField.textProperty().addListener((obs, oldVal, newVal) -> searchDebounce.playFromStart());
+
         Button searchButton = new Button("Search");
         searchButton.getStyleClass().add("nav-button");
         searchButton.setOnAction(e -> refreshProductGrid());
@@ -319,23 +659,15 @@ public class CoffeeOrderApp extends Application {
                 allBtn, drinksBtn, dessertBtn, invoicesBtn,
                 new Label("Name: "), searchField,
                 new Label("Price: "), minPriceField, new Label("-"), maxPriceField,
-                searchButton);
+                searchButton, createBusyIndicator());
 
         orderLayout.setTop(topNav);
 
-        // Center: product grid
-        productGrid = new GridPane();
-        productGrid.getStyleClass().add("product-grid");
-        productGrid.setHgap(15);
-        productGrid.setVgap(15);
-        productGrid.setPadding(new Insets(10));
+        // Center: product grid (virtualized, tiles are recycled while scrolling)
+        productGrid = new ProductGridView(imageCache, this::addProductToOrder);
+        BorderPane.setMargin(productGrid.getNode(), new Insets(10));
         refreshProductGrid();
-
-        ScrollPane productScroll = new ScrollPane(productGrid);
-        productScroll.getStyleClass().add("scroll-pane");
-        productScroll.setFitToWidth(true);
-        productScroll.setFitToHeight(true);
-        orderLayout.setCenter(productScroll);
+        orderLayout.setCenter(productGrid.getNode());
 
         // Right: Invoice area
         VBox invoiceSection = new VBox(10);
@@ -348,14 +680,17 @@ public class CoffeeOrderApp extends Application {
         invoiceList = new ListView<>();
         // Use a custom cell factory to add a style class for invoice items.
         invoiceList.setCellFactory(lv -> new ListCell<>() {
+            {
+                getStyleClass().add("invoice-item");
+            }
+
             @Override
-            protected void updateItem(String item, boolean empty) {
+            protected void updateItem(OrderLine item, boolean empty) {
                 super.updateItem(item, empty);
                 if (empty || item == null) {
                     setText(null);
                 } else {
-                    setText(item);
-                    getStyleClass().add("invoice-item");
+                    setText(item.toString());
                 }
             }
         });
@@ -368,10 +703,12 @@ public class CoffeeOrderApp extends Application {
         HBox actionButtons = new HBox(10);
         Button cancelBtn = new Button("Cancel");
         cancelBtn.getStyleClass().add("action-button");
+        cancelBtn.disableProperty().bind(checkoutInProgress);
         cancelBtn.setOnAction(e -> resetOrder());
 
         Button completeBtn = new Button("Complete Order");
         completeBtn.getStyleClass().add("action-button");
+        completeBtn.disableProperty().bind(checkoutInProgress);
         completeBtn.setOnAction(e -> completeOrder());
 
         actionButtons.getChildren().addAll(cancelBtn, completeBtn);
@@ -379,54 +716,54 @@ public class CoffeeOrderApp extends Application {
         invoiceSection.getChildren().addAll(invoiceTitle, invoiceList, totalInfo, actionButtons);
         orderLayout.setRight(invoiceSection);
 
-        Scene orderScene = new Scene(orderLayout, 1100, 700);
-        orderScene.getStylesheets().add(getClass().getResource("/App/coffee_style.css").toExternalForm());
-
-        stage.setScene(orderScene);
-        stage.setTitle("Coffee Order App (" + currentUserRole + ")");
-        stage.show();
+        return screens.newScene(orderLayout, 1100, 700);
     }
 
     private void refreshProductGrid() {
-        productGrid.getChildren().clear();
-
-        String searchText = (searchField.getText() == null) ? "" : searchField.getText().toLowerCase().trim();
-        double minPrice = 0.0;
-        double maxPrice = Double.MAX_VALUE;
+        searchDebounce.stop();
+        String searchText = (searchField.getText() == null) ? "" : searchField.getText();
+        long minPrice = parsePrice(minPriceField.getText(), 0);
+        long maxPrice = parsePrice(maxPriceField.getText(), Long.MAX_VALUE);
+        Category category = currentCategory;
+        CatalogIndex index = catalogIndex;
+
+        // Only the newest query may update the grid
+        long seq = ++searchSeq;
+        long start = System.nanoTime();
+        CompletableFuture
+                .supplyAsync(() -> index.query(category, searchText, minPrice, maxPrice, true), searchExecutor)
+                .whenComplete((ids, failure) -> Platform.runLater(() -> {
+                    if (failure != null) {
+                        LOGGER.log(Level.WARNING, "Product search failed", failure);
+                        metrics.timer("ui.refreshProductGrid").record(start, false);
+                    } else if (seq == searchSeq) {
+                        productGrid.setProducts(index.getProducts(ids));
+                        metrics.timer("ui.refreshProductGrid").record(start, true);
+                    }
+                }));
+    }
 
+    /** A price filter in cents, or {@code fallback} if the field is empty or not a number. */
+    private static long parsePrice(String text, long fallback) {
+        if (text == null || text.isBlank())
+            return fallback;
         try {
-            minPrice = Double.parseDouble(minPriceField.getText().trim());
-        } catch (Exception ex) {
-            // ignore
-        }
-        try {
-            maxPrice = Double.parseDouble(maxPriceField.getText().trim());
-        } catch (Exception ex) {
-            // ignore
-        }
-
-        List<Product> filtered = new ArrayList<>();
-        for (Product p : products) {
-            boolean catMatch = (currentCategory == null) || (p.getCategory() == currentCategory);
-            boolean nameMatch = searchText.isEmpty() || p.getName().toLowerCase().contains(searchText);
-            boolean priceMatch = (p.getPrice() >= minPrice && p.getPrice() <= maxPrice);
-
-            if (catMatch && nameMatch && priceMatch) {
-                filtered.add(p);
-            }
+            return Money.parse(text);
+        } catch (NumberFormatException ex) {
+            return fallback;
         }
+    }
 
-        int col = 0;
-        int row = 0;
-        for (Product p : filtered) {
-            VBox box = createProductBox(p);
-            productGrid.add(box, col, row);
-            col++;
-            if (col == 3) {
-                col = 0;
-                row++;
-            }
-        }
+    /** Rebuilds the search index off the FX thread after a catalog change, then re-runs the grid's query. */
+    private void rebuildCatalogIndex() {
+        List<Product> snapshot = new ArrayList<>(products);
+        CompletableFuture.supplyAsync(() -> new CatalogIndex(snapshot), searchExecutor)
+                .thenAccept(index -> Platform.runLater(() -> {
+                    catalogIndex = index;
+                    if (productGrid != null) {
+                        refreshProductGrid();
+                    }
+                }));
     }
 
     // -------------------------------------------------
@@ -467,156 +804,41 @@ public class CoffeeOrderApp extends Application {
     }
 
     // -------------------------------------------------
-    // 10. Product Box UI
+    // 10. Adding Products to the Invoice
     // -------------------------------------------------
-    private VBox createProductBox(Product product) {
-        VBox box = new VBox(5);
-        box.getStyleClass().add("product-box");
-        box.setPadding(new Insets(5));
-
-        // Attempt to load the product image
-        try {
-            ImageView iv;
-            if (product.getImageName() != null && !product.getImageName().isEmpty()) {
-                String imagePath = IMAGES_DIR + File.separator + product.getImageName();
-                File imageFile = new File(imagePath);
-                if (imageFile.exists()) {
-                    Image img = new Image(imageFile.toURI().toString());
-                    iv = new ImageView(img);
-                } else {
-                    Image img = new Image(getClass().getResourceAsStream("/App/images/default.png"));
-                    iv = new ImageView(img);
-                }
-            } else {
-                Image img = new Image(getClass().getResourceAsStream("/App/images/default.png"));
-                iv = new ImageView(img);
+    private void addProductToOrder(Product product, Variant variant, int quantity) {
+        switch (orderService.addItem(cart, product, variant, quantity)) {
+            case ADDED -> {
+                invoiceList.getItems().setAll(cart.getLines());
+                updateTotals();
+                // The DB stock is only taken when the order is completed
+                reservationTimeout.playFromStart();
             }
-            iv.setFitWidth(80);
-            iv.setFitHeight(80);
-            iv.setPreserveRatio(true);
-            box.getChildren().add(iv);
-        } catch (Exception e) {
-            box.getChildren().add(new Label("[No Image]"));
-        }
-
-        Label nameLbl = new Label(product.getName());
-        nameLbl.getStyleClass().add("product-name");
-
-        HBox qtyBox = new HBox(5);
-        qtyBox.setAlignment(Pos.CENTER_LEFT);
-        qtyBox.getStyleClass().add("quantity-box");
-
-        Button minusBtn = new Button("-");
-        minusBtn.getStyleClass().add("quantity-button");
-        Label qtyLbl = new Label("1");
-        qtyLbl.getStyleClass().add("quantity-label");
-        Button plusBtn = new Button("+");
-        plusBtn.getStyleClass().add("quantity-button");
-
-        final int[] quantity = { 1 };
-        minusBtn.setOnAction(e -> {
-            if (quantity[0] > 1) {
-                quantity[0]--;
-                qtyLbl.setText(String.valueOf(quantity[0]));
-            }
-        });
-        plusBtn.setOnAction(e -> {
-            if (quantity[0] < product.getStock()) {
-                quantity[0]++;
-                qtyLbl.setText(String.valueOf(quantity[0]));
+            case OUT_OF_STOCK -> showAlert("Out of Stock", "Not enough stock for " + product.getName());
+            case CHECKOUT_IN_PROGRESS -> {
             }
-        });
-
-        qtyBox.getChildren().addAll(minusBtn, qtyLbl, plusBtn);
-
-        Label priceLbl = new Label(String.format("$%.2f", product.getPrice()));
-        priceLbl.getStyleClass().add("product-price");
-
-        box.getChildren().addAll(nameLbl, priceLbl, qtyBox);
-
-        if (product.getCategory() == Category.DRINK) {
-            Button coldBtn = new Button("Cold");
-            coldBtn.getStyleClass().add("nav-button");
-            coldBtn.setOnAction(e -> {
-                if (product.getStock() >= quantity[0]) {
-                    double linePrice = product.getPrice() * quantity[0];
-                    addToInvoice(product, product.getName() + " (Cold)", quantity[0], linePrice);
-                } else {
-                    showAlert("Out of Stock", "Not enough stock for " + product.getName());
-                }
-            });
-
-            Button hotBtn = new Button("Hot");
-            hotBtn.getStyleClass().add("nav-button");
-            hotBtn.setOnAction(e -> {
-                if (product.getStock() >= quantity[0]) {
-                    double linePrice = product.getPrice() * quantity[0];
-                    addToInvoice(product, product.getName() + " (Hot)", quantity[0], linePrice);
-                } else {
-                    showAlert("Out of Stock", "Not enough stock for " + product.getName());
-                }
-            });
-
-            HBox drinkOpts = new HBox(5, coldBtn, hotBtn);
-            box.getChildren().add(drinkOpts);
-
-        } else {
-            Button addBtn = new Button("Add");
-            addBtn.getStyleClass().add("nav-button");
-            addBtn.setOnAction(e -> {
-                if (product.getStock() >= quantity[0]) {
-                    double linePrice = product.getPrice() * quantity[0];
-                    addToInvoice(product, product.getName(), quantity[0], linePrice);
-                } else {
-                    showAlert("Out of Stock", "Not enough stock for " + product.getName());
-                }
-            });
-            box.getChildren().add(addBtn);
         }
-
-        return box;
-    }
-
-    private void addToInvoice(Product product, String displayName, int quantity, double linePrice) {
-        invoiceList.getItems().add(
-                String.format("%s x%d - $%.2f", displayName, quantity, linePrice));
-        totalProducts += quantity;
-        totalPrice += linePrice;
-        updateTotals();
-
-        // Update stock in DB and local product list
-        product.setStock(product.getStock() - quantity);
-        updateProductStockInDB(product.getId(), product.getStock());
     }
 
-    private void updateProductStockInDB(int productId, int newStock) {
-        if (connection == null)
+    private void releaseAbandonedOrder() {
+        if (cart.isEmpty() || cart.isCheckingOut())
             return;
-        String sql = "UPDATE products SET stock = ? WHERE id = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
-            pstmt.setInt(1, newStock);
-            pstmt.setInt(2, productId);
-            pstmt.executeUpdate();
-        } catch (SQLException e) {
-            showError("DB Error", "Failed to update stock: " + e.getMessage(), e);
-        }
+        LOGGER.info("Releasing stock of order idle for " + cart.getIdleMillis() / 1000 + " s");
+        resetOrder();
     }
 
     private void updateTotals() {
-        totalProductsLabel.setText("#Products: " + totalProducts);
-        recalculateInvoiceTotalWithPromo();
-    }
-
-    private void recalculateInvoiceTotalWithPromo() {
-        double discountedTotal = totalPrice * (1.0 - activeDiscountPercent);
-        totalPriceLabel.setText(String.format("Total Price: $%.2f", discountedTotal));
+        totalProductsLabel.setText("#Products: " + cart.getItemCount());
+        totalPriceText.setLength(0);
+        totalPriceText.append("Total Price: ");
+        totalPriceLabel.setText(Money.appendTo(totalPriceText, cart.getTotalCents()).toString());
     }
 
+    /** Cancels the order and hands its reserved stock back. */
     private void resetOrder() {
+        orderService.cancel(cart);
+        reservationTimeout.stop();
         invoiceList.getItems().clear();
-        totalProducts = 0;
-        totalPrice = 0.0;
-        activeDiscountPercent = 0.0;
         updateTotals();
     }
 
@@ -624,107 +846,44 @@ public class CoffeeOrderApp extends Application {
     // 11. Completing Orders + Receipt Printing
     // -------------------------------------------------
     private void completeOrder() {
-        if (invoiceList.getItems().isEmpty()) {
+        if (cart.isEmpty()) {
             showAlert("No Items", "Your invoice is empty!");
             return;
         }
-        String orderId = UUID.randomUUID().toString().substring(0, 8).toUpperCase();
-        String dateTime = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date());
-        List<String> lines = new ArrayList<>(invoiceList.getItems());
-        double invoiceTotal = totalPrice * (1.0 - activeDiscountPercent);
-
-        int invoiceId = saveInvoiceToDB(orderId, invoiceTotal);
-        if (invoiceId > 0) {
-            for (String line : lines) {
-                String[] parts = line.split(" - ");
-                if (parts.length == 2) {
-                    String leftPart = parts[0];
-                    String rightPart = parts[1];
-
-                    double linePrice = 0.0;
-                    try {
-                        linePrice = Double.parseDouble(rightPart.replace("$", ""));
-                    } catch (Exception ex) {
-                        linePrice = 0.0;
-                    }
-
-                    int xIndex = leftPart.lastIndexOf('x');
-                    if (xIndex > 0) {
-                        String productName = leftPart.substring(0, xIndex).trim();
-                        String qtyStr = leftPart.substring(xIndex + 1).trim();
-                        int quantity = 1;
-                        try {
-                            quantity = Integer.parseInt(qtyStr);
-                        } catch (Exception ex) {
-                            quantity = 1;
-                        }
-                        saveInvoiceItemToDB(invoiceId, productName, quantity, linePrice);
-                    }
-                }
-            }
-        }
-
-        Alert a = new Alert(AlertType.INFORMATION);
-        a.setTitle("Order Completed");
-        a.setHeaderText("Order ID: " + orderId);
-        a.setContentText("Date: " + dateTime + "\nTotal: $" + String.format("%.2f", invoiceTotal));
-        ButtonType printBtn = new ButtonType("Print Receipt", ButtonBar.ButtonData.OK_DONE);
-        ButtonType closeBtn = new ButtonType("Close", ButtonBar.ButtonData.CANCEL_CLOSE);
-        a.getButtonTypes().setAll(printBtn, closeBtn);
-
-        Optional<ButtonType> result = a.showAndWait();
-        if (result.isPresent() && result.get() == printBtn) {
-            printReceipt(orderId, dateTime, lines, invoiceTotal);
-        }
-
-        resetOrder();
-    }
-
-    private int saveInvoiceToDB(String orderId, double total) {
-        if (connection == null)
-            return -1;
-        String sql = "INSERT INTO invoices (order_id, date_time, total) VALUES (?, NOW(), ?)";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-            pstmt.setString(1, orderId);
-            pstmt.setDouble(2, total);
-            int rows = pstmt.executeUpdate();
-            if (rows > 0) {
-                ResultSet rs = pstmt.getGeneratedKeys();
-                if (rs.next()) {
-                    return rs.getInt(1);
-                }
+        checkoutInProgress.set(true);
+        CompletableFuture<Receipt> saved = orderService.checkout(cart);
+        saved.whenComplete((receipt, ex) -> Platform.runLater(() -> checkoutInProgress.set(false)));
+        whenDbDone(saved, receipt -> {
+            startupTimeline.mark(StartupTimeline.FIRST_SALE);
+            Alert a = new Alert(AlertType.INFORMATION);
+            a.setTitle("Order Completed");
+            a.setHeaderText("Order ID: " + receipt.getOrderId());
+            a.setContentText("Date: " + receipt.getDateTime() + "\nTotal: " + Money.format(receipt.getTotalCents()));
+            ButtonType printBtn = new ButtonType("Print Receipt", ButtonBar.ButtonData.OK_DONE);
+            ButtonType closeBtn = new ButtonType("Close", ButtonBar.ButtonData.CANCEL_CLOSE);
+            a.getButtonTypes().setAll(printBtn, closeBtn);
+
+            Optional<ButtonType> result = a.showAndWait();
+            if (result.isPresent() && result.get() == printBtn) {
+                printReceipt(receipt);
             }
-        } catch (SQLException e) {
-            showError("DB Error", "Failed to save invoice: " + e.getMessage(), e);
-        }
-        return -1;
-    }
 
-    private void saveInvoiceItemToDB(int invoiceId, String productName, int quantity, double linePrice) {
-        if (connection == null)
-            return;
-        String sql = "INSERT INTO invoice_items (invoice_id, product_name, quantity, line_price) VALUES (?, ?, ?, ?)";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
-            pstmt.setInt(1, invoiceId);
-            pstmt.setString(2, productName);
-            pstmt.setInt(3, quantity);
-            pstmt.setDouble(4, linePrice);
-            pstmt.executeUpdate();
-        } catch (SQLException e) {
-            showError("DB Error", "Failed to save invoice item: " + e.getMessage(), e);
-        }
+            // The cart was emptied by the checkout; this only clears the view
+            resetOrder();
+        }, "Failed to save order");
     }
 
-    private void printReceipt(String orderId, String dateTime, List<String> lines, double total) {
+    private void printReceipt(Receipt receipt) {
         StringBuilder sb = new StringBuilder();
         sb.append("**** Coffee Order Receipt ****\n");
-        sb.append("Order ID: ").append(orderId).append("\n");
-        sb.append("Date/Time: ").append(dateTime).append("\n");
+        sb.append("Order ID: ").append(receipt.getOrderId()).append("\n");
+        sb.append("Date/Time: ").append(receipt.getDateTime()).append("\n");
         sb.append("Items:\n");
-        for (String line : lines) {
+        for (OrderLine line : receipt.getLines()) {
             sb.append("  ").append(line).append("\n");
         }
-        sb.append("\nTotal: $").append(String.format("%.2f", total)).append("\n");
+        sb.append("\nTotal: ");
+        Money.appendTo(sb, receipt.getTotalCents()).append("\n");
         sb.append("**** Thank you! ****\n");
 
         TextArea textArea = new TextArea(sb.toString());
@@ -743,6 +902,10 @@ public class CoffeeOrderApp extends Application {
     // 12. Invoices Scene
     // -------------------------------------------------
     private void showAllInvoicesScene(Stage stage) {
+        screens.show(stage, "invoices", "All Invoices", () -> buildAllInvoicesScreen(stage));
+    }
+
+    private SceneCache.Screen buildAllInvoicesScreen(Stage stage) {
         BorderPane layout = new BorderPane();
 
         Label header = new Label("All Invoices");
@@ -752,82 +915,16 @@ public class CoffeeOrderApp extends Application {
         backBtn.getStyleClass().add("action-button");
         backBtn.setOnAction(e -> showOrderScene(stage));
 
-        VBox top = new VBox(10, header, backBtn);
+        VBox top = new VBox(10, header, new HBox(10, backBtn, createBusyIndicator()));
         top.setPadding(new Insets(10));
         layout.setTop(top);
 
-        VBox invoiceContainer = new VBox(10);
-        invoiceContainer.setPadding(new Insets(10));
-
-        List<CompletedInvoice> allInvoices = loadAllInvoicesFromDB();
-        for (CompletedInvoice inv : allInvoices) {
-            VBox invBox = new VBox(5);
-            invBox.getStyleClass().add("invoice-box");
-
-            Label line1 = new Label("Order ID: " + inv.orderId + " | Date: " + inv.dateTime);
-            line1.getStyleClass().add("invoice-box-header");
-            invBox.getChildren().add(line1);
+        InvoiceHistoryView historyView = new InvoiceHistoryView(this::whenDbDone, dataAccess);
+        BorderPane.setMargin(historyView.getNode(), new Insets(10));
+        layout.setCenter(historyView.getNode());
 
-            for (String itemLine : inv.items) {
-                Label itemLbl = new Label(itemLine);
-                itemLbl.getStyleClass().add("invoice-item");
-                invBox.getChildren().add(itemLbl);
-            }
-
-            Label totalLbl = new Label("Total: $" + String.format("%.2f", inv.total));
-            totalLbl.getStyleClass().add("invoice-total");
-            invBox.getChildren().add(totalLbl);
-
-            invoiceContainer.getChildren().add(invBox);
-        }
-
-        ScrollPane scrollPane = new ScrollPane(invoiceContainer);
-        scrollPane.getStyleClass().add("scroll-pane");
-        scrollPane.setFitToWidth(true);
-        layout.setCenter(scrollPane);
-
-        Scene invoiceScene = new Scene(layout, 1000, 700);
-        invoiceScene.getStylesheets().add(getClass().getResource("/App/coffee_style.css").toExternalForm());
-        stage.setScene(invoiceScene);
-        stage.setTitle("All Invoices");
-        stage.show();
-    }
-
-    private List<CompletedInvoice> loadAllInvoicesFromDB() {
-        List<CompletedInvoice> invoices = new ArrayList<>();
-        if (connection == null)
-            return invoices;
-
-        String sqlInvoices = "SELECT id, order_id, date_time, total FROM invoices ORDER BY id DESC";
-        try (Statement stmt = connection.createStatement();
-                ResultSet rs = stmt.executeQuery(sqlInvoices)) {
-
-            while (rs.next()) {
-                int invId = rs.getInt("id");
-                String orderId = rs.getString("order_id");
-                String dt = rs.getString("date_time");
-                double total = rs.getDouble("total");
-
-                List<String> lines = new ArrayList<>();
-                String sqlItems = "SELECT product_name, quantity, line_price FROM invoice_items WHERE invoice_id = ?";
-                try (PreparedStatement pstmt2 = connection.prepareStatement(sqlItems)) {
-                    pstmt2.setInt(1, invId);
-                    try (ResultSet rsItems = pstmt2.executeQuery()) {
-                        while (rsItems.next()) {
-                            String productName = rsItems.getString("product_name");
-                            int quantity = rsItems.getInt("quantity");
-                            double linePrice = rsItems.getDouble("line_price");
-                            lines.add(String.format("%s x%d - $%.2f", productName, quantity, linePrice));
-                        }
-                    }
-                }
-                invoices.add(new CompletedInvoice(orderId, dt, lines, total));
-            }
-
-        } catch (SQLException e) {
-            showError("DB Error", "Failed to load invoices: " + e.getMessage(), e);
-        }
-        return invoices;
+        // Shown again, it starts over from the newest invoice
+        return new SceneCache.Screen(screens.newScene(layout, 1000, 700), historyView::reload);
     }
 
     // -------------------------------------------------
@@ -858,22 +955,19 @@ public class CoffeeOrderApp extends Application {
         Button applyBtn = new Button("Apply");
         applyBtn.getStyleClass().add("action-button");
         applyBtn.setOnAction(e -> {
-            String enteredCode = codeField.getText().trim();
-            DiscountCode found = findDiscountCodeInDB(enteredCode);
-            if (found == null || !found.isActive()) {
+            DiscountCode found = orderService.applyDiscount(cart, codeField.getText());
+            if (found == null) {
                 errorLabel.setText("Invalid or Inactive Discount Code!");
             } else {
-                activeDiscountPercent = found.getDiscountPercent();
-                incrementDiscountUsage(found);
-                recalculateInvoiceTotalWithPromo();
+                updateTotals();
 
                 Alert success = new Alert(AlertType.INFORMATION);
                 success.setTitle("Discount Applied");
                 success.setHeaderText(null);
                 success.setContentText(String.format(
-                        "Discount Applied: %.0f%% off\n(Usage Count: %d)",
-                        found.getDiscountPercent() * 100,
-                        found.getUsageCount() + 1));
+                        "Discount Applied: %s off\n(Usage Count: %d)",
+                        Money.formatRate(found.getBasisPoints()),
+                        found.getUsageCount()));
                 success.showAndWait();
 
                 popupStage.close();
@@ -883,37 +977,45 @@ public class CoffeeOrderApp extends Application {
         buttonBox.getChildren().addAll(cancelBtn, applyBtn);
         layout.getChildren().addAll(instruction, codeField, errorLabel, buttonBox);
 
-        Scene scene = new Scene(layout, 300, 150);
-        scene.getStylesheets().add(getClass().getResource("/App/coffee_style.css").toExternalForm());
+        Scene scene = screens.newScene(layout, 300, 150);
         popupStage.setScene(scene);
         popupStage.showAndWait();
     }
 
-    private DiscountCode findDiscountCodeInDB(String code) {
-        for (DiscountCode dc : discountCodesFromDB) {
-            if (dc.getCode().equalsIgnoreCase(code)) {
-                return dc;
+    /** Persists the locally counted discount usage as one batch of atomic increments. */
+    private void flushDiscountUsage() {
+        if (!discountCodes.hasPendingUsage())
+            return;
+        Map<Integer, Integer> usage = discountCodes.drainPendingUsage();
+        dataAccess.submit("flushDiscountUsage", conn -> flushDiscountUsageToDB(conn, usage))
+                .whenComplete((v, failure) -> {
+            if (failure != null) {
+                LOGGER.log(Level.WARNING, "Failed to flush discount usage, will retry", failure);
+                discountCodes.restorePendingUsage(usage);
             }
-        }
-        return null;
+        });
     }
 
-    private void incrementDiscountUsage(DiscountCode dc) {
-        dc.incrementUsage();
-        String sql = "UPDATE discount_codes SET usage_count = usage_count + 1 WHERE id = ?";
+    private int flushDiscountUsageToDB(Connection connection, Map<Integer, Integer> usage) throws SQLException {
+        String sql = "UPDATE discount_codes SET usage_count = usage_count + ? WHERE id = ?";
         try (PreparedStatement ps = connection.prepareStatement(sql)) {
-            ps.setInt(1, dc.getId());
-            ps.executeUpdate();
-        } catch (SQLException e) {
-            showError("DB Error", "Failed to increment discount usage.", e);
+            for (Map.Entry<Integer, Integer> e : usage.entrySet()) {
+                ps.setInt(1, e.getValue());
+                ps.setInt(2, e.getKey());
+                ps.addBatch();
+            }
+            return ps.executeBatch().length;
         }
-        loadDiscountCodesFromDB();
     }
 
     // -------------------------------------------------
     // 14. Inventory Management (Admin)
     // -------------------------------------------------
     private void showInventoryManagementScene(Stage stage) {
+        screens.show(stage, "inventory", "Inventory Management", () -> buildInventoryManagementScreen(stage));
+    }
+
+    private SceneCache.Screen buildInventoryManagementScreen(Stage stage) {
         BorderPane root = new BorderPane();
 
         Label title = new Label("Inventory Management");
@@ -923,7 +1025,7 @@ public class CoffeeOrderApp extends Application {
         backBtn.getStyleClass().add("action-button");
         backBtn.setOnAction(e -> showOrderScene(stage));
 
-        HBox topBar = new HBox(10, title, backBtn);
+        HBox topBar = new HBox(10, title, backBtn, createBusyIndicator());
         topBar.setPadding(new Insets(10));
         topBar.setAlignment(Pos.CENTER_LEFT);
         root.setTop(topBar);
@@ -935,8 +1037,8 @@ public class CoffeeOrderApp extends Application {
         nameCol.setCellValueFactory(new PropertyValueFactory<>("name"));
         nameCol.setPrefWidth(150);
 
-        TableColumn<Product, Double> priceCol = new TableColumn<>("Price");
-        priceCol.setCellValueFactory(new PropertyValueFactory<>("price"));
+        TableColumn<Product, String> priceCol = new TableColumn<>("Price");
+        priceCol.setCellValueFactory(cellData -> new SimpleStringProperty(Money.format(cellData.getValue().getPriceCents())));
         priceCol.setPrefWidth(80);
 
         TableColumn<Product, Integer> stockCol = new TableColumn<>("Stock");
@@ -975,9 +1077,7 @@ public class CoffeeOrderApp extends Application {
         deleteBtn.setOnAction(e -> {
             Product selected = inventoryTable.getSelectionModel().getSelectedItem();
             if (selected != null) {
-                deleteProductFromDB(selected.getId());
-                products.remove(selected);
-                inventoryTable.getItems().remove(selected);
+                deleteProduct(selected);
             } else {
                 showAlert("No Selection", "Please select a product to delete.");
             }
@@ -989,23 +1089,39 @@ public class CoffeeOrderApp extends Application {
 
         root.setBottom(btnBox);
 
-        Scene scene = new Scene(root, 800, 500);
-        scene.getStylesheets().add(getClass().getResource("/App/coffee_style.css").toExternalForm());
-        stage.setScene(scene);
-        stage.setTitle("Inventory Management");
-        stage.show();
+        return new SceneCache.Screen(screens.newScene(root, 800, 500),
+                () -> inventoryTable.getItems().setAll(products));
     }
 
-    private void deleteProductFromDB(int productId) {
-        if (connection == null)
-            return;
-        String sql = "DELETE FROM products WHERE id = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
-            pstmt.setInt(1, productId);
-            pstmt.executeUpdate();
-        } catch (SQLException e) {
-            showError("DB Error", "Failed to delete product: " + e.getMessage(), e);
+    /** Deletes the product unless it was changed elsewhere since it was loaded; then the admin is shown the change and asked again. */
+    private void deleteProduct(Product selected) {
+        Product original;
+        synchronized (selected) {
+            original = new Product(selected);
         }
+        runDb("deleteProduct", conn -> new ProductWriter(conn).delete(original), result -> {
+            if (result.getOutcome() == ProductWriter.Outcome.DELETED) {
+                products.remove(selected);
+                rebuildCatalogIndex();
+                inventoryTable.getItems().remove(selected);
+                return;
+            }
+            metrics.counter("admin.productConflicts").increment();
+            refreshProduct(selected, result.getCurrent(), heldStock());
+            inventoryTable.refresh();
+            rebuildCatalogIndex();
+
+            Alert a = new Alert(AlertType.CONFIRMATION);
+            a.setTitle("Product Changed");
+            a.setHeaderText(selected.getName() + " was changed on another register since it was loaded.");
+            a.setContentText("The list now shows the current values. Delete it anyway?");
+            ButtonType deleteBtn = new ButtonType("Delete", ButtonBar.ButtonData.OK_DONE);
+            a.getButtonTypes().setAll(deleteBtn, ButtonType.CANCEL);
+            Optional<ButtonType> choice = a.showAndWait();
+            if (choice.isPresent() && choice.get() == deleteBtn) {
+                deleteProduct(selected);
+            }
+        }, "Failed to delete product");
     }
 
     // -------------------------------------------------
@@ -1042,6 +1158,8 @@ public class CoffeeOrderApp extends Application {
         imagePreview.setPreserveRatio(true);
 
         final File[] selectedImageFile = { null };
+        // The values the form was filled with, so a save can tell what the admin changed
+        final Product[] original = { null };
 
         imageUploadBox.setOnMouseClicked(ev -> {
             FileChooser fileChooser = new FileChooser();
@@ -1071,10 +1189,13 @@ public class CoffeeOrderApp extends Application {
         imageUploadBox.getChildren().addAll(uploadLabel, imagePreview);
 
         if (productToEdit != null) {
-            nameField.setText(productToEdit.getName());
-            priceField.setText(String.valueOf(productToEdit.getPrice()));
-            stockField.setText(String.valueOf(productToEdit.getStock()));
-            categoryBox.setValue(productToEdit.getCategory());
+            synchronized (productToEdit) {
+                original[0] = new Product(productToEdit);
+            }
+            nameField.setText(original[0].getName());
+            priceField.setText(Money.toPlainString(original[0].getPriceCents()));
+            stockField.setText(String.valueOf(original[0].getStock()));
+            categoryBox.setValue(original[0].getCategory());
 
             if (productToEdit.getImageName() != null && !productToEdit.getImageName().isEmpty()) {
                 try {
@@ -1132,7 +1253,7 @@ public class CoffeeOrderApp extends Application {
                 return;
             }
             try {
-                double price = Double.parseDouble(priceField.getText());
+                long priceCents = Money.parse(priceField.getText());
                 int stock = Integer.parseInt(stockField.getText());
 
                 String storedImageName;
@@ -1144,6 +1265,7 @@ public class CoffeeOrderApp extends Application {
                             Paths.get(destPath),
                             java.nio.file.StandardCopyOption.REPLACE_EXISTING);
                     storedImageName = selectedImageFile[0].getName();
+                    imageCache.invalidate(storedImageName);
                 } else {
                     if (productToEdit != null && productToEdit.getImageName() != null) {
                         storedImageName = productToEdit.getImageName();
@@ -1156,26 +1278,42 @@ public class CoffeeOrderApp extends Application {
                     Product newProduct = new Product(
                             nameField.getText(),
                             storedImageName,
-                            price,
+                            priceCents,
                             stock,
                             categoryBox.getValue());
-                    int newId = insertProductIntoDB(newProduct);
-                    if (newId > 0) {
-                        newProduct.setId(newId);
-                        products.add(newProduct);
-                        inventoryTable.getItems().add(newProduct);
-                    }
+                    runDb("insertProduct", conn -> insertProductIntoDB(conn, newProduct), newId -> {
+                        if (newId > 0) {
+                            newProduct.setId(newId);
+                            products.add(newProduct);
+                            rebuildCatalogIndex();
+                            inventoryTable.getItems().add(newProduct);
+                        }
+                        formStage.close();
+                    }, "Failed to insert product");
                 } else {
-                    productToEdit.setName(nameField.getText());
-                    productToEdit.setPrice(price);
-                    productToEdit.setStock(stock);
-                    productToEdit.setCategory(categoryBox.getValue());
-                    productToEdit.setImageName(storedImageName);
-
-                    updateProductInDB(productToEdit);
-                    inventoryTable.refresh();
+                    Product edited = new Product(original[0]);
+                    edited.setName(nameField.getText());
+                    edited.setPriceCents(priceCents);
+                    edited.setStock(stock);
+                    edited.setCategory(categoryBox.getValue());
+                    edited.setImageName(storedImageName);
+
+                    saveProductEdits(productToEdit, original[0], edited, false, formStage::close, current -> {
+                        if (!Objects.equals(current.getImageName(), original[0].getImageName())) {
+                            File currentImage = new File(IMAGES_DIR + File.separator + current.getImageName());
+                            selectedImageFile[0] = currentImage.exists() ? currentImage : null;
+                            imagePreview.setImage(null);
+                            if (currentImage.exists()) {
+                                loadImagePreview(currentImage, imagePreview);
+                            }
+                        }
+                        original[0] = current;
+                        nameField.setText(current.getName());
+                        priceField.setText(Money.toPlainString(current.getPriceCents()));
+                        stockField.setText(String.valueOf(current.getStock()));
+                        categoryBox.setValue(current.getCategory());
+                    });
                 }
-                formStage.close();
 
             } catch (NumberFormatException ex1) {
                 showAlert("Invalid Number", "Price/Stock must be valid numbers.");
@@ -1199,51 +1337,88 @@ public class CoffeeOrderApp extends Application {
                 imageUploadBox,
                 btnBox);
 
-        Scene scene = new Scene(root, 350, 520);
-        scene.getStylesheets().add(getClass().getResource("/App/coffee_style.css").toExternalForm());
+        Scene scene = screens.newScene(root, 350, 520);
         formStage.setScene(scene);
         formStage.show();
     }
 
-    private int insertProductIntoDB(Product product) {
-        if (connection == null)
-            return -1;
-        String sql = "INSERT INTO products (name, image_name, price, stock, category) VALUES (?, ?, ?, ?, ?)";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-            pstmt.setString(1, product.getName());
-            pstmt.setString(2, product.getImageName());
-            pstmt.setDouble(3, product.getPrice());
-            pstmt.setInt(4, product.getStock());
-            pstmt.setString(5, product.getCategory().name());
-
-            int rows = pstmt.executeUpdate();
-            if (rows > 0) {
-                ResultSet rs = pstmt.getGeneratedKeys();
-                if (rs.next()) {
-                    return rs.getInt(1);
+    private int insertProductIntoDB(Connection connection, Product product) throws SQLException {
+        return new CatalogChanges(connection).stamped(version -> {
+            String sql = "INSERT INTO products (name, image_name, price, stock, category, change_version) "
+                    + "VALUES (?, ?, ?, ?, ?, ?)";
+            try (PreparedStatement pstmt = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+                pstmt.setString(1, product.getName());
+                pstmt.setString(2, product.getImageName());
+                pstmt.setBigDecimal(3, Money.toDecimal(product.getPriceCents()));
+                pstmt.setInt(4, product.getStock());
+                pstmt.setString(5, product.getCategory().name());
+                pstmt.setLong(6, version);
+
+                int rows = pstmt.executeUpdate();
+                if (rows > 0) {
+                    ResultSet rs = pstmt.getGeneratedKeys();
+                    if (rs.next()) {
+                        return rs.getInt(1);
+                    }
                 }
             }
-        } catch (SQLException e) {
-            showError("DB Error", "Failed to insert product: " + e.getMessage(), e);
-        }
-        return -1;
+            return -1;
+        });
     }
 
-    private void updateProductInDB(Product product) {
-        if (connection == null)
-            return;
-        String sql = "UPDATE products SET name = ?, image_name = ?, price = ?, stock = ?, category = ? WHERE id = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
-            pstmt.setString(1, product.getName());
-            pstmt.setString(2, product.getImageName());
-            pstmt.setDouble(3, product.getPrice());
-            pstmt.setInt(4, product.getStock());
-            pstmt.setString(5, product.getCategory().name());
-            pstmt.setInt(6, product.getId());
-            pstmt.executeUpdate();
-        } catch (SQLException e) {
-            showError("DB Error", "Failed to update product: " + e.getMessage(), e);
-        }
+    /**
+     * Saves an edit with {@link ProductWriter}. If another register changed
+     * the same fields meanwhile, the admin either keeps their values or has
+     * {@code onReload} refill the form with the current ones to edit again.
+     */
+    private void saveProductEdits(Product product, Product original, Product edited, boolean overwrite,
+            Runnable onSaved, Consumer<Product> onReload) {
+        runDb("updateProduct", conn -> new ProductWriter(conn).update(original, edited, overwrite), result -> {
+            switch (result.getOutcome()) {
+                case SAVED -> {
+                    refreshProduct(product, result.getCurrent(), heldStock());
+                    inventoryTable.refresh();
+                    rebuildCatalogIndex();
+                    onSaved.run();
+                }
+                case DELETED -> {
+                    products.remove(product);
+                    rebuildCatalogIndex();
+                    inventoryTable.getItems().remove(product);
+                    onSaved.run();
+                    showAlert("Product Deleted", original.getName()
+                            + " was deleted on another register; your changes were not saved.");
+                }
+                case CONFLICT -> {
+                    metrics.counter("admin.productConflicts").increment();
+                    refreshProduct(product, result.getCurrent(), heldStock());
+                    inventoryTable.refresh();
+                    rebuildCatalogIndex();
+
+                    Alert a = new Alert(AlertType.CONFIRMATION);
+                    a.setTitle("Edit Conflict");
+                    a.setHeaderText(original.getName() + " was changed on another register while you were editing.");
+                    String changed = result.getConflicts().isEmpty()
+                            ? "It kept changing while your edit was saved."
+                            : String.join("\n", result.getConflicts());
+                    a.setContentText(changed + "\n\nKeep your values, or reload the current ones and edit again?");
+                    ButtonType keepBtn = new ButtonType("Keep Mine", ButtonBar.ButtonData.YES);
+                    ButtonType reloadBtn = new ButtonType("Reload", ButtonBar.ButtonData.NO);
+                    a.getButtonTypes().setAll(keepBtn, reloadBtn, ButtonType.CANCEL);
+
+                    Optional<ButtonType> choice = a.showAndWait();
+                    if (choice.isPresent() && choice.get() == keepBtn) {
+                        saveProductEdits(product, original, edited, true, onSaved, onReload);
+                    } else if (choice.isPresent() && choice.get() == reloadBtn) {
+                        Product current;
+                        synchronized (product) {
+                            current = new Product(product);
+                        }
+                        onReload.accept(current);
+                    }
+                }
+            }
+        }, "Failed to update product");
     }
 
     private void loadImagePreview(File file, ImageView imagePreview) {
@@ -1259,6 +1434,10 @@ public class CoffeeOrderApp extends Application {
     // 16. Manage Discount Codes (Admin)
     // -------------------------------------------------
     private void showManageDiscountCodesScene(Stage stage) {
+        screens.show(stage, "discountCodes", "Manage Discounts", () -> buildManageDiscountCodesScreen(stage));
+    }
+
+    private SceneCache.Screen buildManageDiscountCodesScreen(Stage stage) {
         BorderPane root = new BorderPane();
 
         Label title = new Label("Manage Discount Codes");
@@ -1268,7 +1447,7 @@ public class CoffeeOrderApp extends Application {
         backBtn.getStyleClass().add("action-button");
         backBtn.setOnAction(e -> showOrderScene(stage));
 
-        HBox topBar = new HBox(10, title, backBtn);
+        HBox topBar = new HBox(10, title, backBtn, createBusyIndicator());
         topBar.setPadding(new Insets(10));
         root.setTop(topBar);
 
@@ -1279,8 +1458,9 @@ public class CoffeeOrderApp extends Application {
         TableColumn<DiscountCode, String> codeCol = new TableColumn<>("Code");
         codeCol.setCellValueFactory(new PropertyValueFactory<>("code"));
 
-        TableColumn<DiscountCode, Double> percentCol = new TableColumn<>("Discount %");
-        percentCol.setCellValueFactory(new PropertyValueFactory<>("discountPercent"));
+        TableColumn<DiscountCode, String> percentCol = new TableColumn<>("Discount %");
+        percentCol.setCellValueFactory(
+                cell -> new SimpleStringProperty(Money.formatRate(cell.getValue().getBasisPoints())));
 
         TableColumn<DiscountCode, Integer> usageCol = new TableColumn<>("Usage Count");
         usageCol.setCellValueFactory(new PropertyValueFactory<>("usageCount"));
@@ -1289,7 +1469,7 @@ public class CoffeeOrderApp extends Application {
         activeCol.setCellValueFactory(new PropertyValueFactory<>("active"));
 
         discountTable.getColumns().addAll(codeCol, percentCol, usageCol, activeCol);
-        discountTable.getItems().addAll(discountCodesFromDB);
+        discountTable.getItems().addAll(discountCodes.getAll());
 
         root.setCenter(discountTable);
 
@@ -1309,9 +1489,11 @@ public class CoffeeOrderApp extends Application {
         deleteBtn.setOnAction(e -> {
             DiscountCode selected = discountTable.getSelectionModel().getSelectedItem();
             if (selected != null) {
-                deleteDiscountCodeFromDB(selected.getId());
-                loadDiscountCodesFromDB();
-                discountTable.getItems().setAll(discountCodesFromDB);
+                int id = selected.getId();
+                runDb("deleteDiscountCode", conn -> deleteDiscountCodeFromDB(conn, id), deleted -> {
+                    discountCodes.remove(id);
+                    discountTable.getItems().remove(selected);
+                }, "Failed to delete discount code");
             }
         });
 
@@ -1321,11 +1503,8 @@ public class CoffeeOrderApp extends Application {
 
         root.setBottom(bottomBar);
 
-        Scene sc = new Scene(root, 600, 400);
-        sc.getStylesheets().add(getClass().getResource("/App/coffee_style.css").toExternalForm());
-        stage.setScene(sc);
-        stage.setTitle("Manage Discounts");
-        stage.show();
+        return new SceneCache.Screen(screens.newScene(root, 600, 400),
+                () -> discountTable.getItems().setAll(discountCodes.getAll()));
     }
 
     private void showAddEditDiscountCode(DiscountCode dc, TableView<DiscountCode> table) {
@@ -1345,7 +1524,7 @@ public class CoffeeOrderApp extends Application {
 
         if (dc != null) {
             codeField.setText(dc.getCode());
-            percentField.setText(String.valueOf(dc.getDiscountPercent()));
+            percentField.setText(Money.rateToPlainString(dc.getBasisPoints()));
             activeBox.setSelected(dc.isActive());
         }
 
@@ -1357,26 +1536,40 @@ public class CoffeeOrderApp extends Application {
                 return;
             }
             try {
-                double disc = Double.parseDouble(percentField.getText().trim());
+                int disc = Money.parseRate(percentField.getText());
 
                 // ----------------------------
                 // Cap the discount at 1.0
                 // ----------------------------
-                if (disc > 1.0) {
-                    disc = 1.0;
-                } else if (disc < 0.0) {
-                    disc = 0.0;
+                if (disc > Money.BASIS_POINTS) {
+                    disc = Money.BASIS_POINTS;
+                } else if (disc < 0) {
+                    disc = 0;
                 }
                 // ----------------------------
 
+                String code = codeField.getText().trim();
+                int basisPoints = disc;
+                boolean active = activeBox.isSelected();
                 if (dc == null) {
-                    insertDiscountCodeToDB(codeField.getText().trim(), disc, activeBox.isSelected());
+                    runDb("insertDiscountCode", conn -> insertDiscountCodeToDB(conn, code, basisPoints, active), newId -> {
+                        if (newId > 0) {
+                            discountCodes.put(new DiscountCode(newId, code, basisPoints, 0, active));
+                        }
+                        table.getItems().setAll(discountCodes.getAll());
+                        formStage.close();
+                    }, "Failed to save discount code");
                 } else {
-                    updateDiscountCodeInDB(dc.getId(), codeField.getText().trim(), disc, activeBox.isSelected());
+                    runDb("updateDiscountCode",
+                            conn -> updateDiscountCodeInDB(conn, dc.getId(), code, basisPoints, active), updated -> {
+                        dc.setCode(code);
+                        dc.setBasisPoints(basisPoints);
+                        dc.setActive(active);
+                        discountCodes.put(dc);
+                        table.getItems().setAll(discountCodes.getAll());
+                        formStage.close();
+                    }, "Failed to save discount code");
                 }
-                loadDiscountCodesFromDB();
-                table.getItems().setAll(discountCodesFromDB);
-                formStage.close();
 
             } catch (NumberFormatException ex1) {
                 showAlert("Invalid Number", "Discount% must be a number between 0.0 and 1.0.");
@@ -1392,57 +1585,67 @@ public class CoffeeOrderApp extends Application {
                 activeBox,
                 new HBox(10, cancelBtn, saveBtn));
 
-        Scene sc = new Scene(layout, 300, 200);
-        sc.getStylesheets().add(getClass().getResource("/App/coffee_style.css").toExternalForm());
+        Scene sc = screens.newScene(layout, 300, 200);
         formStage.setScene(sc);
         formStage.show();
     }
 
-    private void insertDiscountCodeToDB(String code, double disc, boolean active) {
-        if (connection == null)
-            return;
-        String sql = "INSERT INTO discount_codes (code, discount_percent, active) VALUES (?, ?, ?)";
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
-            ps.setString(1, code);
-            ps.setDouble(2, disc);
-            ps.setBoolean(3, active);
-            ps.executeUpdate();
-        } catch (SQLException e) {
-            showError("DB Error", "Failed to insert discount code: " + e.getMessage(), e);
-        }
+    private int insertDiscountCodeToDB(Connection connection, String code, int basisPoints, boolean active) throws SQLException {
+        return new CatalogChanges(connection).stamped(version -> {
+            String sql = "INSERT INTO discount_codes (code, discount_percent, active, change_version) VALUES (?, ?, ?, ?)";
+            try (PreparedStatement ps = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+                ps.setString(1, code);
+                ps.setBigDecimal(2, Money.rateToDecimal(basisPoints));
+                ps.setBoolean(3, active);
+                ps.setLong(4, version);
+                ps.executeUpdate();
+                ResultSet rs = ps.getGeneratedKeys();
+                if (rs.next()) {
+                    return rs.getInt(1);
+                }
+            }
+            return -1;
+        });
     }
 
-    private void updateDiscountCodeInDB(int id, String code, double disc, boolean active) {
-        if (connection == null)
-            return;
-        String sql = "UPDATE discount_codes SET code = ?, discount_percent = ?, active = ? WHERE id = ?";
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
-            ps.setString(1, code);
-            ps.setDouble(2, disc);
-            ps.setBoolean(3, active);
-            ps.setInt(4, id);
-            ps.executeUpdate();
-        } catch (SQLException e) {
-            showError("DB Error", "Failed to update discount code: " + e.getMessage(), e);
-        }
+    private int updateDiscountCodeInDB(Connection connection, int id, String code, int basisPoints, boolean active) throws SQLException {
+        return new CatalogChanges(connection).stamped(version -> {
+            String sql = "UPDATE discount_codes SET code = ?, discount_percent = ?, active = ?, change_version = ? WHERE id = ?";
+            try (PreparedStatement ps = connection.prepareStatement(sql)) {
+                ps.setString(1, code);
+                ps.setBigDecimal(2, Money.rateToDecimal(basisPoints));
+                ps.setBoolean(3, active);
+                ps.setLong(4, version);
+                ps.setInt(5, id);
+                return ps.executeUpdate();
+            }
+        });
     }
 
-    private void deleteDiscountCodeFromDB(int id) {
-        if (connection == null)
-            return;
-        String sql = "DELETE FROM discount_codes WHERE id = ?";
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
-            ps.setInt(1, id);
-            ps.executeUpdate();
-        } catch (SQLException e) {
-            showError("DB Error", "Failed to delete discount code: " + e.getMessage(), e);
-        }
+    private int deleteDiscountCodeFromDB(Connection connection, int id) throws SQLException {
+        CatalogChanges changes = new CatalogChanges(connection);
+        return changes.stamped(version -> {
+            String sql = "DELETE FROM discount_codes WHERE id = ?";
+            try (PreparedStatement ps = connection.prepareStatement(sql)) {
+                ps.setInt(1, id);
+                int rows = ps.executeUpdate();
+                if (rows > 0) {
+                    changes.recordDeletion(CatalogChanges.DISCOUNT_CODE, id, version);
+                }
+                return rows;
+            }
+        });
     }
 
     // -------------------------------------------------
     // 17. Reports (Sales & Inventory)
     // -------------------------------------------------
     private void showReportsScene(Stage stage) {
+        screens.show(stage, "reports", "Reports", () -> buildReportsScreen(stage));
+    }
+
+    /** Each report opens in its own window with fresh data, so this screen has nothing to refresh. */
+    private SceneCache.Screen buildReportsScreen(Stage stage) {
         BorderPane root = new BorderPane();
 
         Label title = new Label("Reports");
@@ -1452,7 +1655,7 @@ public class CoffeeOrderApp extends Application {
         backBtn.getStyleClass().add("action-button");
         backBtn.setOnAction(e -> showOrderScene(stage));
 
-        HBox topBar = new HBox(10, title, backBtn);
+        HBox topBar = new HBox(10, title, backBtn, createBusyIndicator());
         topBar.setPadding(new Insets(10));
         root.setTop(topBar);
 
@@ -1475,40 +1678,30 @@ public class CoffeeOrderApp extends Application {
         mainBox.getChildren().addAll(dailySalesBtn, topProductsBtn, lowStockBtn);
         root.setCenter(mainBox);
 
-        Scene sc = new Scene(root, 600, 400);
-        sc.getStylesheets().add(getClass().getResource("/App/coffee_style.css").toExternalForm());
-        stage.setScene(sc);
-        stage.setTitle("Reports");
-        stage.show();
+        return new SceneCache.Screen(screens.newScene(root, 600, 400), null);
     }
 
     private void showDailySales() {
-        if (connection == null) {
-            showAlert("DB Error", "Not connected to DB.");
-            return;
-        }
-        List<DailySale> dailySales = new ArrayList<>();
-        String sql = "SELECT DATE(date_time) as dt, SUM(total) as daily_total " +
-                "FROM invoices GROUP BY DATE(date_time) ORDER BY dt DESC";
-        try (Statement st = connection.createStatement();
-                ResultSet rs = st.executeQuery(sql)) {
-            while (rs.next()) {
-                Date date = rs.getDate("dt");
-                double sum = rs.getDouble("daily_total");
-                dailySales.add(new DailySale(date, sum));
-            }
-        } catch (SQLException e) {
-            showError("Error", e.getMessage(), e);
-            return;
-        }
+        runDb("report.dailySales", conn -> new ReportReader(conn).loadDailySales(DAILY_SALES_REPORT_DAYS),
+                this::showDailySalesReport, "Failed to load daily sales");
+    }
 
+    private void showDailySalesReport(List<DailySale> dailySales) {
         TableView<DailySale> table = new TableView<>();
         table.getStyleClass().add("report-table");
 
         TableColumn<DailySale, String> dateCol = new TableColumn<>("Date");
         dateCol.setCellValueFactory(cellData -> new SimpleStringProperty(cellData.getValue().getDate().toString()));
         TableColumn<DailySale, Number> totalCol = new TableColumn<>("Total Sales");
-        totalCol.setCellValueFactory(cellData -> cellData.getValue().totalProperty());
+        totalCol.setCellValueFactory(cellData -> cellData.getValue().totalCentsProperty());
+        // Sorts by cents, shows dollars
+        totalCol.setCellFactory(col -> new TableCell<>() {
+            @Override
+            protected void updateItem(Number cents, boolean empty) {
+                super.updateItem(cents, empty);
+                setText(empty || cents == null ? null : Money.format(cents.longValue()));
+            }
+        });
 
         table.getColumns().addAll(dateCol, totalCol);
         table.getItems().setAll(dailySales);
@@ -1516,33 +1709,18 @@ public class CoffeeOrderApp extends Application {
         Stage stage = new Stage();
         stage.setTitle("Daily Sales Report");
         BorderPane pane = new BorderPane(table);
-        Scene scene = new Scene(pane, 400, 400);
-        scene.getStylesheets().add(getClass().getResource("/App/coffee_style.css").toExternalForm());
+        Scene scene = screens.newScene(pane, 400, 400);
         stage.setScene(scene);
         stage.show();
     }
 
     private void showTopProducts() {
-        if (connection == null) {
-            showAlert("DB Error", "Not connected to DB.");
-            return;
-        }
-        List<TopProduct> topProducts = new ArrayList<>();
-        String sql = "SELECT product_name, SUM(quantity) as total_sold " +
-                "FROM invoice_items GROUP BY product_name " +
-                "ORDER BY total_sold DESC LIMIT 10";
-        try (Statement st = connection.createStatement();
-                ResultSet rs = st.executeQuery(sql)) {
-            while (rs.next()) {
-                String name = rs.getString("product_name");
-                int sold = rs.getInt("total_sold");
-                topProducts.add(new TopProduct(name, sold));
-            }
-        } catch (SQLException e) {
-            showError("DB Error", "Failed to load top products.", e);
-            return;
-        }
+        SalesWindow window = SalesWindow.LAST_7_DAYS;
+        runDb("report.topProducts", conn -> new ReportReader(conn).loadTopProducts(window, TOP_PRODUCTS_LIMIT),
+                topProducts -> showTopProductsReport(window, topProducts), "Failed to load top products");
+    }
 
+    private void showTopProductsReport(SalesWindow initialWindow, List<TopProduct> topProducts) {
         CategoryAxis xAxis = new CategoryAxis();
         NumberAxis yAxis = new NumberAxis();
         yAxis.setLabel("Units Sold");
@@ -1550,41 +1728,53 @@ public class CoffeeOrderApp extends Application {
 
         BarChart<String, Number> barChart = new BarChart<>(xAxis, yAxis);
         barChart.setTitle("Top-Selling Products");
+        barChart.setAnimated(false);
         XYChart.Series<String, Number> series = new XYChart.Series<>();
         series.setName("Products");
-
-        for (TopProduct tp : topProducts) {
-            series.getData().add(new XYChart.Data<>(tp.getName(), tp.getUnitsSold()));
-        }
+        fillTopProductsSeries(series, topProducts);
         barChart.getData().add(series);
 
+        ComboBox<SalesWindow> windowBox = new ComboBox<>();
+        windowBox.getItems().addAll(SalesWindow.values());
+        windowBox.setValue(initialWindow);
+        windowBox.setOnAction(e -> {
+            SalesWindow window = windowBox.getValue();
+            runDb("report.topProducts",
+                    conn -> new ReportReader(conn).loadTopProducts(window, TOP_PRODUCTS_LIMIT), loaded -> {
+                if (windowBox.getValue() == window) {
+                    fillTopProductsSeries(series, loaded);
+                }
+            }, "Failed to load top products");
+        });
+
+        HBox top = new HBox(10, new Label("Period:"), windowBox);
+        top.setAlignment(Pos.CENTER_LEFT);
+        top.setPadding(new Insets(10));
+
+        BorderPane pane = new BorderPane(barChart);
+        pane.setTop(top);
+
         Stage stage = new Stage();
         stage.setTitle("Top-Selling Products");
-        Scene scene = new Scene(barChart, 600, 400);
-        scene.getStylesheets().add(getClass().getResource("/App/coffee_style.css").toExternalForm());
+        Scene scene = screens.newScene(pane, 600, 440);
         stage.setScene(scene);
         stage.show();
     }
 
-    private void showLowStock() {
-        if (connection == null) {
-            showAlert("DB Error", "Not connected to DB.");
-            return;
-        }
-        List<LowStockItem> lowStockItems = new ArrayList<>();
-        String sql = "SELECT name, stock FROM products WHERE stock < 5 ORDER BY stock ASC";
-        try (Statement st = connection.createStatement();
-                ResultSet rs = st.executeQuery(sql)) {
-            while (rs.next()) {
-                String name = rs.getString("name");
-                int stck = rs.getInt("stock");
-                lowStockItems.add(new LowStockItem(name, stck));
-            }
-        } catch (SQLException e) {
-            showError("DB Error", "Failed to load low-stock products.", e);
-            return;
+    private void fillTopProductsSeries(XYChart.Series<String, Number> series, List<TopProduct> topProducts) {
+        List<XYChart.Data<String, Number>> data = new ArrayList<>(topProducts.size());
+        for (TopProduct tp : topProducts) {
+            data.add(new XYChart.Data<>(tp.getName(), tp.getUnitsSold()));
         }
+        series.getData().setAll(data);
+    }
+
+    private void showLowStock() {
+        runDb("report.lowStock", conn -> new ReportReader(conn).loadLowStock(LOW_STOCK_THRESHOLD),
+                this::showLowStockReport, "Failed to load low-stock products");
+    }
 
+    private void showLowStockReport(List<LowStockItem> lowStockItems) {
         TableView<LowStockItem> table = new TableView<>();
         table.getStyleClass().add("report-table");
 
@@ -1599,8 +1789,7 @@ public class CoffeeOrderApp extends Application {
         Stage stage = new Stage();
         stage.setTitle("Low-Stock Products");
         BorderPane pane = new BorderPane(table);
-        Scene scene = new Scene(pane, 400, 400);
-        scene.getStylesheets().add(getClass().getResource("/App/coffee_style.css").toExternalForm());
+        Scene scene = screens.newScene(pane, 400, 400);
         stage.setScene(scene);
         stage.show();
     }
@@ -3,15 +3,17 @@ package App;
 import java.util.List;
 
 public class CompletedInvoice {
+    int id;
     String orderId;
     String dateTime;
-    List<String> items;
-    double total;
+    List<String> items; // null until the line items have been loaded
+    long totalCents;
 
-    public CompletedInvoice(String orderId, String dateTime, List<String> items, double total) {
+    public CompletedInvoice(int id, String orderId, String dateTime, List<String> items, long totalCents) {
+        this.id = id;
         this.orderId = orderId;
         this.dateTime = dateTime;
         this.items = items;
-        this.total = total;
+        this.totalCents = totalCents;
     }
 }
@@ -0,0 +1,289 @@
+package App;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Small fixed-size JDBC connection pool.
+ * <ul>
+ * <li>at most {@code maxSize} connections are borrowed at once; further callers wait up to the borrow timeout</li>
+ * <li>idle connections are reused most-recently-used first and checked with {@link Connection#isValid} when
+ * they have been idle for a while</li>
+ * <li>a maintenance thread closes connections idle longer than the idle timeout and logs connections held
+ * longer than the leak threshold (0 disables this); the borrower's stack trace is only captured, on every
+ * borrow, if {@link #setCaptureBorrowerStacks} is on</li>
+ * </ul>
+ */
+public class ConnectionPool implements AutoCloseable {
+    private static final Logger LOGGER = Logger.getLogger(ConnectionPool.class.getName());
+
+    // Connections returned this recently are handed out again without a validation round trip
+    private static final long VALIDATION_SKIP_MILLIS = 500;
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+    private static final long MAINTENANCE_INTERVAL_MILLIS = 10_000;
+
+    private static class IdleConnection {
+        final Connection connection;
+        final long idleSince;
+
+        IdleConnection(Connection connection, long idleSince) {
+            this.connection = connection;
+            this.idleSince = idleSince;
+        }
+    }
+
+    private static class Lease {
+        final long borrowedAt;
+        final Throwable borrower; // null unless borrower stacks are captured
+        volatile boolean reported;
+
+        Lease(long borrowedAt, Throwable borrower) {
+            this.borrowedAt = borrowedAt;
+            this.borrower = borrower;
+        }
+    }
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final int maxSize;
+
+    private long borrowTimeoutMillis = 5_000;
+    private long idleTimeoutMillis = 5 * 60_000;
+    private long leakThresholdMillis = 30_000;
+    private boolean captureBorrowerStacks = false;
+
+    private final Semaphore permits;
+    private final ConcurrentLinkedDeque<IdleConnection> idle = new ConcurrentLinkedDeque<>();
+    private final Map<Connection, Lease> leases = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService maintenance;
+    private volatile boolean closed = false;
+
+    private final AtomicLong borrowCount = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicLong timeoutCount = new AtomicLong();
+    private final AtomicLong createdCount = new AtomicLong();
+    private final AtomicLong leakCount = new AtomicLong();
+
+    public ConnectionPool(String url, String user, String password, int maxSize) {
+        if (maxSize < 1)
+            throw new IllegalArgumentException("Pool size must be at least 1: " + maxSize);
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.maxSize = maxSize;
+        this.permits = new Semaphore(maxSize, true);
+        this.maintenance = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "connection-pool-maintenance");
+            t.setDaemon(true);
+            return t;
+        });
+        maintenance.scheduleWithFixedDelay(this::runMaintenance,
+                MAINTENANCE_INTERVAL_MILLIS, MAINTENANCE_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    public void setBorrowTimeoutMillis(long borrowTimeoutMillis) {
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+    }
+
+    public void setIdleTimeoutMillis(long idleTimeoutMillis) {
+        this.idleTimeoutMillis = idleTimeoutMillis;
+    }
+
+    public void setLeakThresholdMillis(long leakThresholdMillis) {
+        this.leakThresholdMillis = leakThresholdMillis;
+    }
+
+    /** Whether a leak report includes where the connection was borrowed; costs a stack trace per borrow. */
+    public void setCaptureBorrowerStacks(boolean captureBorrowerStacks) {
+        this.captureBorrowerStacks = captureBorrowerStacks;
+    }
+
+    /** Borrows a validated connection. Every borrow must be paired with {@link #release}. */
+    public Connection borrow() throws SQLException {
+        if (closed)
+            throw new SQLException("Connection pool is closed");
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(borrowTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                timeoutCount.incrementAndGet();
+                throw new SQLTransientConnectionException(
+                        "Timed out after " + borrowTimeoutMillis + " ms waiting for a database connection ("
+                                + maxSize + " in use)");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", e);
+        }
+
+        try {
+            Connection connection = takeIdle();
+            if (connection == null) {
+                connection = DriverManager.getConnection(url, user, password);
+                createdCount.incrementAndGet();
+            }
+            recordWait(System.nanoTime() - start);
+            Throwable borrower = captureBorrowerStacks && leakThresholdMillis > 0
+                    ? new Throwable("Connection borrowed here") : null;
+            leases.put(connection, new Lease(System.currentTimeMillis(), borrower));
+            return connection;
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    public void release(Connection connection) {
+        if (connection == null || leases.remove(connection) == null)
+            return;
+        try {
+            if (closed || connection.isClosed()) {
+                closeQuietly(connection);
+                return;
+            }
+            if (!connection.getAutoCommit()) {
+                // Never hand out a connection with someone else's half-finished transaction
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+            idle.push(new IdleConnection(connection, System.currentTimeMillis()));
+        } catch (SQLException e) {
+            LOGGER.log(Level.WARNING, "Discarding connection that failed to reset", e);
+            closeQuietly(connection);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private Connection takeIdle() {
+        IdleConnection candidate;
+        while ((candidate = idle.poll()) != null) {
+            long idleFor = System.currentTimeMillis() - candidate.idleSince;
+            if (idleFor < VALIDATION_SKIP_MILLIS || isValid(candidate.connection)) {
+                return candidate.connection;
+            }
+            LOGGER.fine("Discarding stale pooled connection");
+            closeQuietly(candidate.connection);
+        }
+        return null;
+    }
+
+    private boolean isValid(Connection connection) {
+        try {
+            return connection.isValid(VALIDATION_TIMEOUT_SECONDS);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void recordWait(long waitNanos) {
+        borrowCount.incrementAndGet();
+        totalWaitNanos.addAndGet(waitNanos);
+        maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+    }
+
+    private void runMaintenance() {
+        long now = System.currentTimeMillis();
+
+        // The deque is most-recently-used first, so the stalest connections sit at the tail
+        Iterator<IdleConnection> it = idle.descendingIterator();
+        while (it.hasNext()) {
+            IdleConnection candidate = it.next();
+            if (now - candidate.idleSince < idleTimeoutMillis)
+                break;
+            if (idle.removeLastOccurrence(candidate)) {
+                closeQuietly(candidate.connection);
+            }
+        }
+
+        if (leakThresholdMillis <= 0)
+            return;
+        for (Lease lease : leases.values()) {
+            long heldFor = now - lease.borrowedAt;
+            if (!lease.reported && heldFor > leakThresholdMillis) {
+                lease.reported = true;
+                leakCount.incrementAndGet();
+                LOGGER.log(Level.WARNING, "Possible connection leak: connection held for " + heldFor + " ms",
+                        lease.borrower);
+            }
+        }
+    }
+
+    private static void closeQuietly(Connection connection) {
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            LOGGER.log(Level.FINE, "Failed to close connection", e);
+        }
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public int getActiveCount() {
+        return leases.size();
+    }
+
+    public int getIdleCount() {
+        return idle.size();
+    }
+
+    public long getBorrowCount() {
+        return borrowCount.get();
+    }
+
+    public double getAverageWaitMillis() {
+        long borrows = borrowCount.get();
+        return borrows == 0 ? 0.0 : totalWaitNanos.get() / (borrows * 1_000_000.0);
+    }
+
+    public double getMaxWaitMillis() {
+        return maxWaitNanos.get() / 1_000_000.0;
+    }
+
+    public long getTimeoutCount() {
+        return timeoutCount.get();
+    }
+
+    public long getCreatedCount() {
+        return createdCount.get();
+    }
+
+    public long getLeakCount() {
+        return leakCount.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ConnectionPool[active=%d, idle=%d, max=%d, borrows=%d, avgWait=%.2fms, "
+                        + "maxWait=%.2fms, timeouts=%d, created=%d, leaks=%d]",
+                getActiveCount(), getIdleCount(), maxSize, getBorrowCount(), getAverageWaitMillis(),
+                getMaxWaitMillis(), getTimeoutCount(), getCreatedCount(), getLeakCount());
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        maintenance.shutdownNow();
+        IdleConnection candidate;
+        while ((candidate = idle.poll()) != null) {
+            closeQuietly(candidate.connection);
+        }
+        LOGGER.info("Closed " + this);
+    }
+}
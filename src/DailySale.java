@@ -1,17 +1,17 @@
 package App;
 
-import javafx.beans.property.SimpleDoubleProperty;
+import javafx.beans.property.SimpleLongProperty;
 import javafx.beans.property.SimpleObjectProperty;
 
 import java.util.Date;
 
 public class DailySale {
     private final SimpleObjectProperty<Date> date = new SimpleObjectProperty<>();
-    private final SimpleDoubleProperty total = new SimpleDoubleProperty();
+    private final SimpleLongProperty totalCents = new SimpleLongProperty();
 
-    public DailySale(Date date, double total) {
+    public DailySale(Date date, long totalCents) {
         this.date.set(date);
-        this.total.set(total);
+        this.totalCents.set(totalCents);
     }
 
     public Date getDate() {
@@ -22,11 +22,11 @@ public class DailySale {
         return date;
     }
 
-    public double getTotal() {
-        return total.get();
+    public long getTotalCents() {
+        return totalCents.get();
     }
 
-    public SimpleDoubleProperty totalProperty() {
-        return total;
+    public SimpleLongProperty totalCentsProperty() {
+        return totalCents;
     }
 }
@@ -0,0 +1,90 @@
+package App;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs all JDBC work on virtual threads so the JavaFX Application Thread never
+ * waits on the database. Callers get a CompletableFuture and are expected to
+ * hop back to the FX thread (Platform.runLater) before touching the UI.
+ * <p>
+ * Each task borrows its own connection from the pool, so a slow report no
+ * longer queues checkout behind it; the pool size bounds the concurrency.
+ * <p>
+ * Every task is named and timed as {@code db.<name>} (including the wait for
+ * a connection), and the pool's state is published as {@code db.pool.*} gauges.
+ */
+public class DataAccess implements AutoCloseable {
+
+    @FunctionalInterface
+    public interface SqlFunction<T> {
+        T apply(Connection connection) throws SQLException;
+    }
+
+    private final ConnectionPool pool;
+    private final MetricsRegistry metrics;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    public DataAccess(ConnectionPool pool) {
+        this(pool, new MetricsRegistry());
+    }
+
+    public DataAccess(ConnectionPool pool, MetricsRegistry metrics) {
+        this.pool = pool;
+        this.metrics = metrics;
+        metrics.gauge("db.pool.active", pool::getActiveCount);
+        metrics.gauge("db.pool.idle", pool::getIdleCount);
+        metrics.gauge("db.pool.avgWaitMillis", pool::getAverageWaitMillis);
+        metrics.gauge("db.pool.maxWaitMillis", pool::getMaxWaitMillis);
+        metrics.gauge("db.pool.timeouts", pool::getTimeoutCount);
+        metrics.gauge("db.pool.leaks", pool::getLeakCount);
+    }
+
+    public ConnectionPool getPool() {
+        return pool;
+    }
+
+    public MetricsRegistry getMetrics() {
+        return metrics;
+    }
+
+    /** Runs {@code work} on a virtual thread, timed as {@code db.<name>}. */
+    public <T> CompletableFuture<T> submit(String name, SqlFunction<T> work) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return call(name, work);
+            } catch (SQLException e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
+
+    /** Runs {@code work} on the calling thread with a pooled connection, timed as {@code db.<name>}. */
+    public <T> T call(String name, SqlFunction<T> work) throws SQLException {
+        MetricsRegistry.Timer timer = metrics.timer("db." + name);
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            Connection connection = pool.borrow();
+            try {
+                T result = work.apply(connection);
+                success = true;
+                return result;
+            } finally {
+                pool.release(connection);
+            }
+        } finally {
+            timer.record(start, success);
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+        pool.close();
+    }
+}
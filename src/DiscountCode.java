@@ -3,20 +3,20 @@ package App;
 public class DiscountCode {
     private int id; // primary key in DB
     private String code;
-    private double discountPercent;
+    private int basisPoints;
     private int usageCount;
     private boolean active;
 
-    public DiscountCode(int id, String code, double discountPercent, int usageCount, boolean active) {
+    public DiscountCode(int id, String code, int basisPoints, int usageCount, boolean active) {
         this.id = id;
         this.code = code;
-        this.discountPercent = discountPercent;
+        this.basisPoints = basisPoints;
         this.usageCount = usageCount;
         this.active = active;
     }
 
-    public DiscountCode(String code, double discountPercent) {
-        this(0, code, discountPercent, 0, true);
+    public DiscountCode(String code, int basisPoints) {
+        this(0, code, basisPoints, 0, true);
     }
 
     public int getId() {
@@ -35,12 +35,13 @@ public class DiscountCode {
         this.code = code;
     }
 
-    public double getDiscountPercent() {
-        return discountPercent;
+    /** The discount in basis points, e.g. 1000 for 10% off; see {@link Money#applyDiscount}. */
+    public int getBasisPoints() {
+        return basisPoints;
     }
 
-    public void setDiscountPercent(double discountPercent) {
-        this.discountPercent = discountPercent;
+    public void setBasisPoints(int basisPoints) {
+        this.basisPoints = basisPoints;
     }
 
     public int getUsageCount() {
@@ -0,0 +1,105 @@
+package App;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Case-insensitive hash index over the discount codes, kept up to date in
+ * place by the admin screens. Usage is counted locally and handed out in
+ * batches by {@link #drainPendingUsage()} so it can be flushed as atomic
+ * increments instead of one UPDATE (and a table reload) per application.
+ * Thread-safe: every method locks the index, so carts on any thread can look
+ * codes up and record their use.
+ */
+public class DiscountCodeIndex {
+    private final Map<String, DiscountCode> byCode = new LinkedHashMap<>();
+    private final Map<Integer, DiscountCode> byId = new HashMap<>();
+    private final Map<Integer, Integer> pendingUsage = new HashMap<>();
+
+    static String normalize(String code) {
+        return code == null ? "" : code.trim().toUpperCase(Locale.ROOT);
+    }
+
+    public synchronized void replaceAll(List<DiscountCode> codes) {
+        byCode.clear();
+        byId.clear();
+        for (DiscountCode dc : codes) {
+            put(dc);
+        }
+    }
+
+    public synchronized DiscountCode find(String code) {
+        return byCode.get(normalize(code));
+    }
+
+    /** Adds a code or re-indexes an existing one (by id), e.g. after it was renamed. */
+    public synchronized void put(DiscountCode dc) {
+        DiscountCode previous = byId.put(dc.getId(), dc);
+        if (previous != null) {
+            byCode.remove(normalize(previous.getCode()), previous);
+        }
+        byCode.put(normalize(dc.getCode()), dc);
+    }
+
+    /**
+     * Applies a code as read from the database by another register's edit.
+     * An indexed code is updated in place, so carts holding it see the change;
+     * usage counted here but not yet flushed is added on top of the stored count.
+     */
+    public synchronized void refresh(DiscountCode fresh) {
+        int usage = fresh.getUsageCount() + pendingUsage.getOrDefault(fresh.getId(), 0);
+        DiscountCode existing = byId.get(fresh.getId());
+        if (existing == null) {
+            fresh.setUsageCount(usage);
+            put(fresh);
+            return;
+        }
+        byCode.remove(normalize(existing.getCode()), existing);
+        existing.setCode(fresh.getCode());
+        existing.setBasisPoints(fresh.getBasisPoints());
+        existing.setActive(fresh.isActive());
+        existing.setUsageCount(usage);
+        byCode.put(normalize(existing.getCode()), existing);
+    }
+
+    public synchronized void remove(int id) {
+        DiscountCode removed = byId.remove(id);
+        if (removed != null) {
+            byCode.remove(normalize(removed.getCode()), removed);
+        }
+        pendingUsage.remove(id);
+    }
+
+    public synchronized List<DiscountCode> getAll() {
+        return new ArrayList<>(byCode.values());
+    }
+
+    public synchronized void recordUse(DiscountCode dc) {
+        dc.incrementUsage();
+        pendingUsage.merge(dc.getId(), 1, Integer::sum);
+    }
+
+    public synchronized boolean hasPendingUsage() {
+        return !pendingUsage.isEmpty();
+    }
+
+    /** Returns the not yet persisted usage per code id and resets it. */
+    public synchronized Map<Integer, Integer> drainPendingUsage() {
+        Map<Integer, Integer> drained = new HashMap<>(pendingUsage);
+        pendingUsage.clear();
+        return drained;
+    }
+
+    /** Puts back usage that failed to flush, so it is retried with the next batch. */
+    public synchronized void restorePendingUsage(Map<Integer, Integer> usage) {
+        for (Map.Entry<Integer, Integer> e : usage.entrySet()) {
+            if (byId.containsKey(e.getKey())) {
+                pendingUsage.merge(e.getKey(), e.getValue(), Integer::sum);
+            }
+        }
+    }
+}
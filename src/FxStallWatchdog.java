@@ -0,0 +1,269 @@
+package App;
+
+import javafx.application.Platform;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Detects freezes of the JavaFX Application Thread. A daemon thread posts a
+ * heartbeat with {@code Platform.runLater} every {@value #CHECK_INTERVAL_MILLIS}
+ * ms. While a heartbeat is overdue by more than the threshold, the FX
+ * thread's stack is sampled, including the lock it waits for and the thread
+ * holding it. Together the samples show what the thread was doing, e.g. a
+ * JDBC call or an image decode.
+ * <p>
+ * Stall durations go to the {@code ui.fxStallMillis} histogram and heartbeat
+ * delays to the {@code ui.fxEventDelay} timer. Stall reports, with the
+ * sampled stacks and the stall durations seen so far, are appended to
+ * {@code <dir>/fx-stalls-<register>-<date>.log}. At most one report is
+ * written per report interval; skipped stalls are counted in the next report.
+ * A stall that lasts beyond the hang threshold is reported while it is still
+ * going on, in case the register is killed before it recovers.
+ */
+public class FxStallWatchdog implements AutoCloseable {
+    private static final Logger LOGGER = Logger.getLogger(FxStallWatchdog.class.getName());
+    private static final long CHECK_INTERVAL_MILLIS = 50;
+    private static final int MAX_DISTINCT_STACKS = 20;
+    private static final long[] DURATION_BUCKETS_MILLIS = { 1_000, 2_000, 5_000, 10_000, 30_000 };
+    private static final DateTimeFormatter LINE_TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final DateTimeFormatter FILE_DATE = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+
+    private final Consumer<Runnable> eventQueue;
+    private final String register;
+    private final Path dir;
+    private final long thresholdNanos;
+    private final long hangNanos;
+    private final long reportIntervalNanos;
+    private final MetricsRegistry.Histogram stallMillis;
+    private final MetricsRegistry.Timer eventDelay;
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "fx-stall-watchdog");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // Written by the heartbeat on the FX thread, read by the watchdog thread
+    private volatile boolean pending;
+    private volatile long postedAt;
+    private volatile long ranAt;
+    private volatile Thread fxThread;
+
+    // Watchdog thread only
+    private Stall stall;
+    private long lastReportAt = Long.MIN_VALUE;
+    private int unreportedStalls;
+    private final long[] durationCounts = new long[DURATION_BUCKETS_MILLIS.length + 1];
+
+    /** Watches the real FX thread; see {@link #FxStallWatchdog(MetricsRegistry, String, Path, long, Consumer)}. */
+    public FxStallWatchdog(MetricsRegistry metrics, String register, Path dir, long thresholdMillis) {
+        this(metrics, register, dir, thresholdMillis, Platform::runLater);
+    }
+
+    /**
+     * @param dir             folder for the stall reports; created on the first report
+     * @param thresholdMillis a heartbeat later than this counts as a stall
+     * @param eventQueue      runs the heartbeat on the watched thread
+     */
+    FxStallWatchdog(MetricsRegistry metrics, String register, Path dir, long thresholdMillis,
+            Consumer<Runnable> eventQueue) {
+        this.eventQueue = eventQueue;
+        this.register = register;
+        this.dir = dir;
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+        this.hangNanos = Math.max(TimeUnit.SECONDS.toNanos(5), 10 * thresholdNanos);
+        this.reportIntervalNanos = TimeUnit.SECONDS.toNanos(Long.getLong("coffee.fxWatchdog.reportIntervalSec", 60L));
+        this.stallMillis = metrics.histogram("ui.fxStallMillis");
+        this.eventDelay = metrics.timer("ui.fxEventDelay");
+    }
+
+    public void start() {
+        scheduler.scheduleWithFixedDelay(this::checkQuietly, 0, CHECK_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    private void checkQuietly() {
+        try {
+            check();
+        } catch (RuntimeException e) {
+            // An exception would cancel the scheduled check for good
+            LOGGER.log(Level.WARNING, "FX stall check failed", e);
+        }
+    }
+
+    private void check() {
+        long now = System.nanoTime();
+        if (!pending) {
+            if (stall != null) {
+                finishStall(ranAt - stall.startedAt);
+            }
+            pending = true;
+            postedAt = now;
+            eventQueue.accept(this::beat);
+            return;
+        }
+        long waited = now - postedAt;
+        if (waited < thresholdNanos)
+            return;
+        if (stall == null) {
+            stall = new Stall(postedAt);
+        }
+        stall.sample(captureFxStack());
+        if (waited >= hangNanos && !stall.hangReported) {
+            stall.hangReported = true;
+            writeReport("FX thread has been stalled for " + TimeUnit.NANOSECONDS.toMillis(waited)
+                    + " ms and is still stalled", stall);
+        }
+    }
+
+    /** Runs on the FX thread. */
+    private void beat() {
+        fxThread = Thread.currentThread();
+        ranAt = System.nanoTime();
+        eventDelay.record(postedAt, true);
+        pending = false;
+    }
+
+    private void finishStall(long durationNanos) {
+        Stall finished = stall;
+        stall = null;
+        long millis = TimeUnit.NANOSECONDS.toMillis(durationNanos);
+        stallMillis.record(millis);
+        int bucket = 0;
+        while (bucket < DURATION_BUCKETS_MILLIS.length && millis >= DURATION_BUCKETS_MILLIS[bucket]) {
+            bucket++;
+        }
+        durationCounts[bucket]++;
+
+        // A hang already reported is always followed up with how long it lasted
+        long now = System.nanoTime();
+        if (!finished.hangReported && lastReportAt != Long.MIN_VALUE && now - lastReportAt < reportIntervalNanos) {
+            unreportedStalls++;
+            return;
+        }
+        writeReport("FX thread stalled for " + millis + " ms", finished);
+    }
+
+    private void writeReport(String headline, Stall stalled) {
+        lastReportAt = System.nanoTime();
+        String threshold = " (threshold " + TimeUnit.NANOSECONDS.toMillis(thresholdNanos) + " ms)";
+        String skipped = unreportedStalls == 0 ? ""
+                : "; " + unreportedStalls + " stall(s) not reported since the last report";
+        unreportedStalls = 0;
+        LOGGER.warning(headline + threshold + skipped);
+
+        LocalDateTime now = LocalDateTime.now();
+        String nl = System.lineSeparator();
+        StringBuilder report = new StringBuilder();
+        report.append(now.format(LINE_TIME)).append(" register=").append(register).append(' ')
+                .append(headline).append(threshold).append(skipped).append(nl);
+        if (stalled.samples.isEmpty()) {
+            report.append("  No stack captured (the FX thread has not run a heartbeat yet)").append(nl);
+        } else {
+            report.append("  FX thread stack, sampled every ").append(CHECK_INTERVAL_MILLIS).append(" ms while stalled:")
+                    .append(nl);
+            List<Map.Entry<String, Integer>> stacks = new ArrayList<>(stalled.samples.entrySet());
+            stacks.sort((a, b) -> b.getValue() - a.getValue());
+            for (Map.Entry<String, Integer> entry : stacks) {
+                report.append("  ").append(entry.getValue()).append(" sample(s): ").append(entry.getKey());
+            }
+        }
+        report.append("  Stall durations since start: ").append(durationSummary()).append(nl).append(nl);
+
+        try {
+            Files.createDirectories(dir);
+            Path file = dir.resolve("fx-stalls-" + register.replaceAll("[^A-Za-z0-9._-]", "_") + "-"
+                    + now.format(FILE_DATE) + ".log");
+            try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                out.write(report.toString());
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to write FX stall report to " + dir, e);
+        }
+    }
+
+    private String durationSummary() {
+        StringBuilder summary = new StringBuilder();
+        long lower = TimeUnit.NANOSECONDS.toMillis(thresholdNanos);
+        for (int i = 0; i < durationCounts.length; i++) {
+            if (i < DURATION_BUCKETS_MILLIS.length && DURATION_BUCKETS_MILLIS[i] <= lower)
+                continue;
+            if (summary.length() > 0) {
+                summary.append(", ");
+            }
+            if (i < DURATION_BUCKETS_MILLIS.length) {
+                summary.append(lower).append("-").append(DURATION_BUCKETS_MILLIS[i]).append(" ms: ");
+                lower = DURATION_BUCKETS_MILLIS[i];
+            } else {
+                summary.append(">=").append(lower).append(" ms: ");
+            }
+            summary.append(durationCounts[i]);
+        }
+        return summary.toString();
+    }
+
+    /** The FX thread's state, awaited lock and frames, or null before the first heartbeat. */
+    private String captureFxStack() {
+        Thread thread = fxThread;
+        if (thread == null)
+            return null;
+        ThreadInfo[] infos = threads.getThreadInfo(new long[] { thread.threadId() }, false, false);
+        ThreadInfo info = infos.length == 0 ? null : infos[0];
+        if (info == null)
+            return null;
+        String nl = System.lineSeparator();
+        StringBuilder stack = new StringBuilder(info.getThreadState().toString());
+        if (info.getLockName() != null) {
+            stack.append(" on ").append(info.getLockName());
+            if (info.getLockOwnerName() != null) {
+                stack.append(" held by \"").append(info.getLockOwnerName()).append('"');
+            }
+        }
+        stack.append(nl);
+        for (StackTraceElement frame : info.getStackTrace()) {
+            stack.append("      at ").append(frame).append(nl);
+        }
+        return stack.toString();
+    }
+
+    private static final class Stall {
+        final long startedAt;
+        final Map<String, Integer> samples = new LinkedHashMap<>();
+        boolean hangReported;
+
+        Stall(long startedAt) {
+            this.startedAt = startedAt;
+        }
+
+        void sample(String stack) {
+            if (stack != null && (samples.containsKey(stack) || samples.size() < MAX_DISTINCT_STACKS)) {
+                samples.merge(stack, 1, Integer::sum);
+            }
+        }
+    }
+}
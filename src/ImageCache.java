@@ -0,0 +1,139 @@
+package App;
+
+import javafx.beans.value.ChangeListener;
+import javafx.beans.value.ObservableValue;
+import javafx.scene.image.Image;
+import javafx.scene.image.ImageView;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Bounded LRU cache of decoded product images, keyed by image name and target
+ * size. Images are decoded in the background directly at the requested size,
+ * and views show a shared placeholder until decoding finishes, or instead of
+ * an image that failed to decode until it is invalidated. Must only be
+ * used from the FX Application Thread.
+ */
+public class ImageCache {
+    private static final Logger LOGGER = Logger.getLogger(ImageCache.class.getName());
+    private static final String DEFAULT_IMAGE = "/App/images/default.png";
+    private static final String REQUEST_KEY = ImageCache.class.getName() + ".request";
+    private static final String PENDING_KEY = ImageCache.class.getName() + ".pending";
+
+    private final String imagesDir;
+    private final Map<String, Image> cache;
+    private final Map<String, Image> placeholders = new LinkedHashMap<>();
+
+    public ImageCache(String imagesDir, int maxEntries) {
+        this.imagesDir = imagesDir;
+        this.cache = new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Image> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Shows {@code imageName} in {@code view} at the given size. If the image is
+     * still decoding the placeholder is shown and swapped out once it is ready,
+     * unless the view has been asked to show a different image in the meantime.
+     * A view waits for at most one image, so recycled views do not pile up
+     * listeners on cached images.
+     */
+    public void load(ImageView view, String imageName, double width, double height) {
+        String key = key(imageName, width, height);
+        view.getProperties().put(REQUEST_KEY, key);
+        PendingLoad previous = (PendingLoad) view.getProperties().remove(PENDING_KEY);
+        if (previous != null) {
+            previous.detach();
+        }
+
+        Image image = get(imageName, width, height);
+        if (image.getProgress() >= 1.0 && !image.isError()) {
+            view.setImage(image);
+            return;
+        }
+        view.setImage(placeholder(width, height));
+        PendingLoad pending = new PendingLoad(view, image, key);
+        view.getProperties().put(PENDING_KEY, pending);
+        image.progressProperty().addListener(pending);
+    }
+
+    public Image get(String imageName, double width, double height) {
+        String key = key(imageName, width, height);
+        Image image = cache.get(key);
+        if (image == null) {
+            image = decode(imageName, width, height);
+            cache.put(key, image);
+        } else if (image.isError()) {
+            // Remember the failure, so a missing or broken file is read once, not on every bind
+            LOGGER.warning("Cannot decode product image " + imageName + ": " + image.getException());
+            image = placeholder(width, height);
+            cache.put(key, image);
+        }
+        return image;
+    }
+
+    /** Drops every cached size of {@code imageName}, e.g. after the file was replaced. */
+    public void invalidate(String imageName) {
+        String prefix = imageName + "@";
+        Iterator<String> it = cache.keySet().iterator();
+        while (it.hasNext()) {
+            if (it.next().startsWith(prefix)) {
+                it.remove();
+            }
+        }
+    }
+
+    private Image decode(String imageName, double width, double height) {
+        if (imageName != null && !imageName.isEmpty()) {
+            File imageFile = new File(imagesDir, imageName);
+            if (imageFile.exists()) {
+                return new Image(imageFile.toURI().toString(), width, height, true, true, true);
+            }
+        }
+        return placeholder(width, height);
+    }
+
+    private Image placeholder(double width, double height) {
+        return placeholders.computeIfAbsent(key(DEFAULT_IMAGE, width, height),
+                k -> new Image(getClass().getResource(DEFAULT_IMAGE).toExternalForm(), width, height, true, true));
+    }
+
+    private static String key(String imageName, double width, double height) {
+        return imageName + "@" + (int) width + "x" + (int) height;
+    }
+
+    /** Swaps the decoded image into a view once it is ready, then removes itself. */
+    private static class PendingLoad implements ChangeListener<Number> {
+        private final ImageView view;
+        private final Image image;
+        private final String key;
+
+        PendingLoad(ImageView view, Image image, String key) {
+            this.view = view;
+            this.image = image;
+            this.key = key;
+        }
+
+        @Override
+        public void changed(ObservableValue<? extends Number> obs, Number oldVal, Number newVal) {
+            if (newVal.doubleValue() < 1.0)
+                return;
+            detach();
+            view.getProperties().remove(PENDING_KEY, this);
+            if (!image.isError() && key.equals(view.getProperties().get(REQUEST_KEY))) {
+                view.setImage(image);
+            }
+        }
+
+        void detach() {
+            image.progressProperty().removeListener(this);
+        }
+    }
+}
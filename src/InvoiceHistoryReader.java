@@ -0,0 +1,99 @@
+package App;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads invoice history a page at a time. Headers are fetched with a keyset
+ * query on id (newest first) and the items for a whole page with a single
+ * IN (...) query, so each page costs two round trips regardless of how many
+ * invoices exist.
+ */
+public class InvoiceHistoryReader {
+    private static final String SELECT_PAGE =
+            "SELECT id, order_id, date_time, total FROM invoices WHERE id < ? ORDER BY id DESC LIMIT ?";
+
+    private final Connection connection;
+
+    public InvoiceHistoryReader(Connection connection) {
+        this.connection = connection;
+    }
+
+    /**
+     * Loads up to {@code pageSize} invoices with an id lower than {@code beforeId},
+     * items included. Pass {@link Integer#MAX_VALUE} for the first page and the
+     * id of the last invoice returned for the next one.
+     */
+    public List<CompletedInvoice> loadPage(int beforeId, int pageSize) throws SQLException {
+        List<CompletedInvoice> page = loadHeaders(beforeId, pageSize);
+        if (page.isEmpty())
+            return page;
+
+        List<Integer> ids = new ArrayList<>(page.size());
+        for (CompletedInvoice inv : page) {
+            ids.add(inv.id);
+        }
+        Map<Integer, List<String>> items = loadItems(ids);
+        for (CompletedInvoice inv : page) {
+            inv.items = items.getOrDefault(inv.id, new ArrayList<>());
+        }
+        return page;
+    }
+
+    /**
+     * Same as {@link #loadPage} but leaves {@code items} null, for views that
+     * only fetch line items once an invoice is expanded.
+     */
+    public List<CompletedInvoice> loadHeaders(int beforeId, int pageSize) throws SQLException {
+        List<CompletedInvoice> page = new ArrayList<>(pageSize);
+        try (PreparedStatement ps = connection.prepareStatement(SELECT_PAGE)) {
+            ps.setInt(1, beforeId);
+            ps.setInt(2, pageSize);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    page.add(new CompletedInvoice(
+                            rs.getInt("id"),
+                            rs.getString("order_id"),
+                            rs.getString("date_time"),
+                            null,
+                            Money.fromDecimal(rs.getBigDecimal("total"))));
+                }
+            }
+        }
+        return page;
+    }
+
+    /** Fetches the item lines of all given invoices in one query, keyed by invoice id. */
+    public Map<Integer, List<String>> loadItems(List<Integer> invoiceIds) throws SQLException {
+        Map<Integer, List<String>> itemsByInvoice = new HashMap<>();
+        if (invoiceIds.isEmpty())
+            return itemsByInvoice;
+
+        StringBuilder sql = new StringBuilder(
+                "SELECT invoice_id, product_name, quantity, line_price FROM invoice_items WHERE invoice_id IN (");
+        for (int i = 0; i < invoiceIds.size(); i++) {
+            sql.append(i == 0 ? "?" : ",?");
+        }
+        sql.append(") ORDER BY invoice_id, id");
+
+        try (PreparedStatement ps = connection.prepareStatement(sql.toString())) {
+            for (int i = 0; i < invoiceIds.size(); i++) {
+                ps.setInt(i + 1, invoiceIds.get(i));
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    String line = rs.getString("product_name") + " x" + rs.getInt("quantity") + " - "
+                            + Money.format(Money.fromDecimal(rs.getBigDecimal("line_price")));
+                    itemsByInvoice.computeIfAbsent(rs.getInt("invoice_id"), k -> new ArrayList<>()).add(line);
+                }
+            }
+        }
+        return itemsByInvoice;
+    }
+}
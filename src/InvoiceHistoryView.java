@@ -0,0 +1,194 @@
+package App;
+
+import javafx.application.Platform;
+import javafx.geometry.Insets;
+import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
+import javafx.scene.layout.Priority;
+import javafx.scene.layout.VBox;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Virtualized invoice history. Only the visible rows have cells, headers are
+ * fetched a page at a time as the user scrolls towards the end, and the line
+ * items of an invoice are loaded the first time it is expanded (click to
+ * toggle). All queries run on the data-access executor.
+ * <p>
+ * If a page fails to load, a retry button appears below the list, and
+ * scrolling only tries again after a backoff that doubles with each failure.
+ */
+public class InvoiceHistoryView {
+    private static final int PAGE_SIZE = 100;
+    private static final int PREFETCH_ROWS = 20;
+    private static final long MIN_RETRY_MILLIS = 1_000;
+    private static final long MAX_RETRY_MILLIS = 30_000;
+
+    /** Delivers a query result on the FX thread, or reports the failure. */
+    @FunctionalInterface
+    public interface ResultHandler {
+        <T> void whenDone(CompletableFuture<T> future, Consumer<T> onSuccess, String errorMsg);
+    }
+
+    private final ResultHandler resultHandler;
+    private final DataAccess dataAccess;
+    private final ListView<CompletedInvoice> listView = new ListView<>();
+    private final Button retryButton = new Button("Loading invoices failed. Retry");
+    private final VBox node = new VBox(5, listView, retryButton);
+    private final Set<Integer> expandedIds = new HashSet<>();
+
+    private int nextBeforeId = Integer.MAX_VALUE;
+    private boolean exhausted = false;
+    private boolean loading = false;
+    private long retryDelayMillis = MIN_RETRY_MILLIS;
+    private long retryNotBefore = 0;
+    // Bumped by reload() so pages requested before it are dropped
+    private int generation = 0;
+
+    public InvoiceHistoryView(ResultHandler resultHandler, DataAccess dataAccess) {
+        this.resultHandler = resultHandler;
+        this.dataAccess = dataAccess;
+        listView.getStyleClass().add("invoice-history");
+        listView.setCellFactory(lv -> new InvoiceCell());
+        VBox.setVgrow(listView, Priority.ALWAYS);
+        retryButton.getStyleClass().add("action-button");
+        retryButton.setMaxWidth(Double.MAX_VALUE);
+        retryButton.setOnAction(e -> {
+            retryNotBefore = 0;
+            loadNextPage();
+        });
+        showRetry(false);
+        loadNextPage();
+    }
+
+    public VBox getNode() {
+        return node;
+    }
+
+    /** Drops the loaded invoices and fetches the newest page again. */
+    public void reload() {
+        generation++;
+        listView.getItems().clear();
+        expandedIds.clear();
+        nextBeforeId = Integer.MAX_VALUE;
+        exhausted = false;
+        loading = false;
+        retryDelayMillis = MIN_RETRY_MILLIS;
+        retryNotBefore = 0;
+        showRetry(false);
+        loadNextPage();
+    }
+
+    private void loadNextPage() {
+        if (loading || exhausted || System.currentTimeMillis() < retryNotBefore)
+            return;
+        loading = true;
+        showRetry(false);
+        int beforeId = nextBeforeId;
+        int requestedIn = generation;
+        CompletableFuture<List<CompletedInvoice>> future =
+                dataAccess.submit("invoiceHistory.headers", conn -> new InvoiceHistoryReader(conn).loadHeaders(beforeId, PAGE_SIZE));
+        future.whenComplete((page, failure) -> {
+            if (failure != null) {
+                Platform.runLater(() -> pageFailed(requestedIn));
+            }
+        });
+        resultHandler.whenDone(future, page -> {
+            if (requestedIn != generation)
+                return;
+            loading = false;
+            retryDelayMillis = MIN_RETRY_MILLIS;
+            if (page.size() < PAGE_SIZE) {
+                exhausted = true;
+            }
+            if (!page.isEmpty()) {
+                nextBeforeId = page.get(page.size() - 1).id;
+                listView.getItems().addAll(page);
+            }
+        }, "Failed to load invoices");
+    }
+
+    /** Lets the next page be requested again, by the retry button at once or by scrolling after a backoff. */
+    private void pageFailed(int requestedIn) {
+        if (requestedIn != generation)
+            return;
+        loading = false;
+        retryNotBefore = System.currentTimeMillis() + retryDelayMillis;
+        retryDelayMillis = Math.min(retryDelayMillis * 2, MAX_RETRY_MILLIS);
+        showRetry(true);
+    }
+
+    private void showRetry(boolean show) {
+        retryButton.setVisible(show);
+        retryButton.setManaged(show);
+    }
+
+    private void toggleExpanded(CompletedInvoice inv) {
+        if (expandedIds.remove(inv.id)) {
+            listView.refresh();
+        } else if (inv.items != null) {
+            expandedIds.add(inv.id);
+            listView.refresh();
+        } else {
+            resultHandler.whenDone(
+                    dataAccess.submit("invoiceHistory.items",
+                            conn -> new InvoiceHistoryReader(conn).loadItems(List.of(inv.id))),
+                    items -> {
+                        inv.items = items.getOrDefault(inv.id, List.of());
+                        expandedIds.add(inv.id);
+                        listView.refresh();
+                    }, "Failed to load invoice items");
+        }
+    }
+
+    private class InvoiceCell extends ListCell<CompletedInvoice> {
+        private final VBox box = new VBox(5);
+        private final Label headerLbl = new Label();
+        private final VBox itemsBox = new VBox(2);
+        private final Label totalLbl = new Label();
+
+        InvoiceCell() {
+            box.getStyleClass().add("invoice-box");
+            box.setPadding(new Insets(5));
+            headerLbl.getStyleClass().add("invoice-box-header");
+            totalLbl.getStyleClass().add("invoice-total");
+            box.getChildren().addAll(headerLbl, itemsBox, totalLbl);
+            setOnMouseClicked(e -> {
+                if (getItem() != null) {
+                    toggleExpanded(getItem());
+                }
+            });
+        }
+
+        @Override
+        protected void updateItem(CompletedInvoice inv, boolean empty) {
+            super.updateItem(inv, empty);
+            itemsBox.getChildren().clear();
+            if (empty || inv == null) {
+                setGraphic(null);
+                return;
+            }
+            headerLbl.setText("Order ID: " + inv.orderId + " | Date: " + inv.dateTime);
+            totalLbl.setText("Total: " + Money.format(inv.totalCents));
+            if (expandedIds.contains(inv.id) && inv.items != null) {
+                for (String itemLine : inv.items) {
+                    Label itemLbl = new Label(itemLine);
+                    itemLbl.getStyleClass().add("invoice-item");
+                    itemsBox.getChildren().add(itemLbl);
+                }
+            }
+            setGraphic(box);
+
+            if (!exhausted && getIndex() >= getListView().getItems().size() - PREFETCH_ROWS) {
+                // Never mutate the items while the ListView is laying out its cells
+                Platform.runLater(InvoiceHistoryView.this::loadNextPage);
+            }
+        }
+    }
+}
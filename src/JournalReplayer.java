@@ -0,0 +1,126 @@
+package App;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Drains the {@link OrderJournal} into the database on a background thread,
+ * oldest order first, one transaction per order via
+ * {@link CheckoutWriter#replay}. While the database is unreachable it retries
+ * with exponential backoff, and the orders wait in the journal. An order that
+ * the database keeps rejecting as invalid ({@code 22xxx} or {@code 23xxx}
+ * SQLState) is moved to the journal's rejected log, so it does not hold up
+ * the orders behind it.
+ * <p>
+ * Replays are timed as {@code db.journalReplay}; {@code journal.replayed} and
+ * {@code journal.rejected} count the outcomes.
+ */
+public class JournalReplayer implements AutoCloseable {
+    private static final Logger LOGGER = Logger.getLogger(JournalReplayer.class.getName());
+    private static final long MIN_BACKOFF_MILLIS = 250;
+    private static final long MAX_BACKOFF_MILLIS = 30_000;
+    private static final int MAX_ATTEMPTS_WHEN_REJECTED = 3;
+
+    private final OrderJournal journal;
+    private final DataAccess dataAccess;
+    private final MetricsRegistry.Counter replayed;
+    private final MetricsRegistry.Counter rejected;
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    public JournalReplayer(OrderJournal journal, DataAccess dataAccess) {
+        this.journal = journal;
+        this.dataAccess = dataAccess;
+        this.replayed = dataAccess.getMetrics().counter("journal.replayed");
+        this.rejected = dataAccess.getMetrics().counter("journal.rejected");
+        this.thread = new Thread(this::run, "journal-replayer");
+        thread.setDaemon(true);
+    }
+
+    public void start() {
+        thread.start();
+    }
+
+    /** Stops after the order being replayed, if any; the rest stay in the journal for the next start. */
+    @Override
+    public void close() {
+        running = false;
+        thread.interrupt();
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        long backoff = MIN_BACKOFF_MILLIS;
+        long failingSequence = -1;
+        int attempts = 0;
+        boolean outage = false;
+        while (running) {
+            OrderJournal.Entry entry;
+            try {
+                entry = journal.awaitPending(1_000);
+            } catch (InterruptedException e) {
+                break;
+            }
+            if (entry == null)
+                continue;
+            try {
+                dataAccess.call("journalReplay", conn -> new CheckoutWriter(conn).replay(entry));
+                journal.markReplayed(entry.getSequence());
+                replayed.increment();
+                if (outage) {
+                    LOGGER.info("Database reachable again; replaying " + journal.getPendingCount()
+                            + " journaled order(s)");
+                    outage = false;
+                }
+                backoff = MIN_BACKOFF_MILLIS;
+                attempts = 0;
+                continue;
+            } catch (SQLException e) {
+                attempts = entry.getSequence() == failingSequence ? attempts + 1 : 1;
+                failingSequence = entry.getSequence();
+                if (isRejection(e) && attempts >= MAX_ATTEMPTS_WHEN_REJECTED) {
+                    rejectQuietly(entry, e);
+                    attempts = 0;
+                    continue;
+                }
+                if (!outage) {
+                    LOGGER.log(Level.WARNING, "Cannot write journaled order " + entry.getOrderId()
+                            + " to the database; will keep retrying", e);
+                    outage = true;
+                }
+            } catch (IOException | RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Failed to replay journaled order " + entry.getOrderId(), e);
+            }
+            try {
+                Thread.sleep(backoff);
+            } catch (InterruptedException e) {
+                break;
+            }
+            backoff = Math.min(backoff * 2, MAX_BACKOFF_MILLIS);
+        }
+    }
+
+    private void rejectQuietly(OrderJournal.Entry entry, SQLException cause) {
+        LOGGER.log(Level.SEVERE, "Database rejects journaled order " + entry.getOrderId()
+                + "; moving it to the journal's rejected log", cause);
+        try {
+            journal.reject(entry, cause.getSQLState() + " " + cause.getMessage());
+            rejected.increment();
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Failed to move order " + entry.getOrderId() + " to the rejected log", e);
+        }
+    }
+
+    /** Invalid data or a constraint violation, as opposed to the database being unavailable. */
+    private static boolean isRejection(SQLException e) {
+        String state = e.getSQLState();
+        return state != null && (state.startsWith("22") || state.startsWith("23"));
+    }
+}
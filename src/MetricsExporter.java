@@ -0,0 +1,277 @@
+package App;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+
+import App.MetricsRegistry.Counter;
+import App.MetricsRegistry.Gauge;
+import App.MetricsRegistry.Histogram;
+import App.MetricsRegistry.Metric;
+import App.MetricsRegistry.Snapshot;
+import App.MetricsRegistry.Timer;
+
+/**
+ * Publishes a {@link MetricsRegistry} two ways. Every metric is an MBean
+ * named {@code App:type=Metrics,register=<id>,name=<metric>}, with totals
+ * since start, for JConsole/VisualVM or a JMX scraper. Every interval, the
+ * activity of that interval is appended to
+ * {@code <dir>/metrics-<register>-<date>.log}, one line per metric, so
+ * percentiles and error rates per register can be compared afterwards.
+ */
+public class MetricsExporter implements AutoCloseable {
+    private static final Logger LOGGER = Logger.getLogger(MetricsExporter.class.getName());
+    private static final DateTimeFormatter LINE_TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final DateTimeFormatter FILE_DATE = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+
+    private final MetricsRegistry registry;
+    private final String register;
+    private final Path dir;
+    private final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    private final Map<String, ObjectName> mbeans = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "metrics-exporter");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // State at the previous file write, to turn running totals into per-interval values
+    private final Map<String, Snapshot> lastSnapshots = new HashMap<>();
+    private final Map<String, Long> lastCounts = new HashMap<>();
+
+    /**
+     * @param register identifies this register in MBean names and file names
+     * @param dir      folder for the metrics files; created on the first write
+     */
+    public MetricsExporter(MetricsRegistry registry, String register, Path dir) {
+        this.registry = registry;
+        this.register = register;
+        this.dir = dir;
+    }
+
+    /** Registers the MBeans and starts appending to the file every {@code intervalSeconds}. */
+    public void start(long intervalSeconds) {
+        registry.addListener(this::registerMBean);
+        scheduler.scheduleAtFixedRate(this::writeQuietly, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    /** Writes the last partial interval and removes the MBeans. */
+    @Override
+    public void close() {
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        writeQuietly();
+        for (ObjectName name : mbeans.values()) {
+            try {
+                server.unregisterMBean(name);
+            } catch (JMException e) {
+                LOGGER.log(Level.FINE, "Could not unregister " + name, e);
+            }
+        }
+        mbeans.clear();
+    }
+
+    private void registerMBean(Metric metric) {
+        try {
+            ObjectName name = new ObjectName("App:type=Metrics,register=" + ObjectName.quote(register)
+                    + ",name=" + ObjectName.quote(metric.getName()));
+            // A gauge registered again under the same name replaces the old one
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(new MetricMBean(metric), name);
+            mbeans.put(metric.getName(), name);
+        } catch (JMException e) {
+            LOGGER.log(Level.WARNING, "Could not register metric " + metric.getName() + " with JMX", e);
+        }
+    }
+
+    private synchronized void writeQuietly() {
+        try {
+            write();
+        } catch (IOException | RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Failed to write metrics to " + dir, e);
+        }
+    }
+
+    private void write() throws IOException {
+        LocalDateTime now = LocalDateTime.now();
+        StringBuilder lines = new StringBuilder();
+        for (Metric metric : registry.getMetrics()) {
+            Map<String, Object> values = intervalValues(metric);
+            if (values == null)
+                continue;
+            lines.append(now.format(LINE_TIME)).append(" register=").append(register).append(' ').append(metric.getName());
+            values.forEach((key, value) -> lines.append(' ').append(key).append('=').append(format(value)));
+            lines.append(System.lineSeparator());
+        }
+        if (lines.length() == 0)
+            return;
+        Files.createDirectories(dir);
+        Path file = dir.resolve("metrics-" + register.replaceAll("[^A-Za-z0-9._-]", "_") + "-" + now.format(FILE_DATE) + ".log");
+        try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            out.write(lines.toString());
+        }
+    }
+
+    /** What happened since the previous write, or null if a timer, histogram or counter saw nothing. */
+    private Map<String, Object> intervalValues(Metric metric) {
+        String name = metric.getName();
+        Map<String, Object> values = new LinkedHashMap<>();
+        if (metric instanceof Timer timer) {
+            Snapshot total = timer.snapshot();
+            long errors = timer.getErrorCount();
+            Snapshot interval = total.since(lastSnapshots.put(name, total));
+            Long lastErrors = lastCounts.put(name, errors);
+            if (interval.getCount() == 0)
+                return null;
+            timerValues(values, interval, errors - (lastErrors == null ? 0 : lastErrors));
+        } else if (metric instanceof Histogram histogram) {
+            Snapshot total = histogram.snapshot();
+            Snapshot interval = total.since(lastSnapshots.put(name, total));
+            if (interval.getCount() == 0)
+                return null;
+            histogramValues(values, interval);
+        } else if (metric instanceof Counter counter) {
+            long total = counter.getCount();
+            Long last = lastCounts.put(name, total);
+            long delta = total - (last == null ? 0 : last);
+            if (delta == 0)
+                return null;
+            values.put("Count", delta);
+            values.put("Total", total);
+        } else if (metric instanceof Gauge gauge) {
+            values.put("Value", gauge.getValue());
+        }
+        return values;
+    }
+
+    /** Totals since start, as shown over JMX. */
+    static Map<String, Object> totalValues(Metric metric) {
+        Map<String, Object> values = new LinkedHashMap<>();
+        if (metric instanceof Timer timer) {
+            timerValues(values, timer.snapshot(), timer.getErrorCount());
+        } else if (metric instanceof Histogram histogram) {
+            histogramValues(values, histogram.snapshot());
+        } else if (metric instanceof Counter counter) {
+            values.put("Count", counter.getCount());
+        } else if (metric instanceof Gauge gauge) {
+            values.put("Value", gauge.getValue());
+        }
+        return values;
+    }
+
+    private static void timerValues(Map<String, Object> values, Snapshot latency, long errors) {
+        values.put("Count", latency.getCount());
+        values.put("Errors", errors);
+        values.put("ErrorRate", latency.getCount() == 0 ? 0.0 : (double) errors / latency.getCount());
+        values.put("MeanMillis", latency.getMean() / 1e6);
+        values.put("P50Millis", latency.getPercentile(0.50) / 1e6);
+        values.put("P90Millis", latency.getPercentile(0.90) / 1e6);
+        values.put("P99Millis", latency.getPercentile(0.99) / 1e6);
+        values.put("P999Millis", latency.getPercentile(0.999) / 1e6);
+        values.put("MaxMillis", latency.getMax() / 1e6);
+    }
+
+    private static void histogramValues(Map<String, Object> values, Snapshot snapshot) {
+        values.put("Count", snapshot.getCount());
+        values.put("Mean", snapshot.getMean());
+        values.put("P50", snapshot.getPercentile(0.50));
+        values.put("P90", snapshot.getPercentile(0.90));
+        values.put("P99", snapshot.getPercentile(0.99));
+        values.put("Max", snapshot.getMax());
+    }
+
+    private static String format(Object value) {
+        return value instanceof Double d ? String.format(Locale.ROOT, "%.3f", d) : String.valueOf(value);
+    }
+
+    /** Read-only MBean whose attributes are the metric's {@link #totalValues}. */
+    private static class MetricMBean implements DynamicMBean {
+        private final Metric metric;
+
+        MetricMBean(Metric metric) {
+            this.metric = metric;
+        }
+
+        @Override
+        public Object getAttribute(String attribute) throws AttributeNotFoundException {
+            Object value = totalValues(metric).get(attribute);
+            if (value == null)
+                throw new AttributeNotFoundException(attribute);
+            return value;
+        }
+
+        @Override
+        public AttributeList getAttributes(String[] attributes) {
+            Map<String, Object> values = totalValues(metric);
+            AttributeList list = new AttributeList();
+            for (String attribute : attributes) {
+                if (values.containsKey(attribute)) {
+                    list.add(new Attribute(attribute, values.get(attribute)));
+                }
+            }
+            return list;
+        }
+
+        @Override
+        public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+            throw new AttributeNotFoundException("Metrics are read-only: " + attribute.getName());
+        }
+
+        @Override
+        public AttributeList setAttributes(AttributeList attributes) {
+            return new AttributeList();
+        }
+
+        @Override
+        public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+            throw new ReflectionException(new NoSuchMethodException(actionName));
+        }
+
+        @Override
+        public MBeanInfo getMBeanInfo() {
+            Map<String, Object> values = totalValues(metric);
+            MBeanAttributeInfo[] attributes = new MBeanAttributeInfo[values.size()];
+            int i = 0;
+            for (Map.Entry<String, Object> entry : values.entrySet()) {
+                attributes[i++] = new MBeanAttributeInfo(entry.getKey(), entry.getValue().getClass().getName(),
+                        entry.getKey(), true, false, false);
+            }
+            return new MBeanInfo(getClass().getName(), metric.getClass().getSimpleName() + " " + metric.getName(),
+                    attributes, null, null, null);
+        }
+    }
+}
@@ -0,0 +1,267 @@
+package App;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.DoubleSupplier;
+import java.util.function.Supplier;
+
+/**
+ * In-process metrics: counters, histograms, timers and gauges, looked up by
+ * name and created on first use. Recording is lock-free and cheap enough for
+ * every JDBC call and UI refresh. {@link MetricsExporter} publishes them via
+ * JMX and to a periodic local file.
+ */
+public class MetricsRegistry {
+
+    /** Anything the registry holds; exporters only need the name. */
+    public interface Metric {
+        String getName();
+    }
+
+    public static class Counter implements Metric {
+        private final String name;
+        private final LongAdder count = new LongAdder();
+
+        Counter(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        public void increment() {
+            count.increment();
+        }
+
+        public void add(long n) {
+            count.add(n);
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+    }
+
+    /**
+     * Distribution of non-negative long values in log-linear buckets: eight
+     * buckets per power of two, so percentiles are within 12.5% of the true
+     * value at any magnitude. Values are never discarded; interval views are
+     * taken by subtracting an earlier {@link Snapshot}.
+     */
+    public static class Histogram implements Metric {
+        private static final int SUB_BUCKETS = 8;
+        private static final int BUCKETS = 62 * SUB_BUCKETS;
+
+        private final String name;
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final LongAdder sum = new LongAdder();
+
+        Histogram(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        public void record(long value) {
+            long v = Math.max(0, value);
+            buckets.incrementAndGet(bucketOf(v));
+            sum.add(v);
+        }
+
+        public Snapshot snapshot() {
+            long[] counts = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] = buckets.get(i);
+            }
+            return new Snapshot(counts, sum.sum());
+        }
+
+        static int bucketOf(long v) {
+            if (v < SUB_BUCKETS)
+                return (int) v;
+            int shift = 63 - Long.numberOfLeadingZeros(v) - 3;
+            return (shift + 1) * SUB_BUCKETS + (int) ((v >>> shift) & (SUB_BUCKETS - 1));
+        }
+
+        /** Largest value that falls into {@code bucket}. */
+        static long upperBoundOf(int bucket) {
+            if (bucket < SUB_BUCKETS)
+                return bucket;
+            int shift = bucket / SUB_BUCKETS - 1;
+            long sub = bucket % SUB_BUCKETS;
+            return ((SUB_BUCKETS + sub + 1) << shift) - 1;
+        }
+    }
+
+    /** Immutable copy of a histogram's buckets. */
+    public static class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+
+        Snapshot(long[] counts, long sum) {
+            this.counts = counts;
+            this.sum = sum;
+            long total = 0;
+            for (long c : counts) {
+                total += c;
+            }
+            this.count = total;
+        }
+
+        /** What was recorded after {@code earlier} was taken. */
+        public Snapshot since(Snapshot earlier) {
+            if (earlier == null)
+                return this;
+            long[] diff = new long[counts.length];
+            for (int i = 0; i < counts.length; i++) {
+                diff[i] = counts[i] - earlier.counts[i];
+            }
+            return new Snapshot(diff, sum - earlier.sum);
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public double getMean() {
+            return count == 0 ? 0.0 : (double) sum / count;
+        }
+
+        /** Upper bound of the bucket holding the {@code p} quantile (0..1), or 0 when empty. */
+        public long getPercentile(double p) {
+            if (count == 0)
+                return 0;
+            long rank = Math.max(1, (long) Math.ceil(p * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Histogram.upperBoundOf(i);
+                }
+            }
+            return Histogram.upperBoundOf(counts.length - 1);
+        }
+
+        public long getMax() {
+            return getPercentile(1.0);
+        }
+    }
+
+    /** Latency histogram in nanoseconds plus a count of failed calls. */
+    public static class Timer implements Metric {
+        private final String name;
+        private final Histogram latency;
+        private final LongAdder errors = new LongAdder();
+
+        Timer(String name) {
+            this.name = name;
+            this.latency = new Histogram(name);
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        /** Records a call that started at {@code startNanos} (a {@link System#nanoTime} value). */
+        public void record(long startNanos, boolean success) {
+            latency.record(System.nanoTime() - startNanos);
+            if (!success) {
+                errors.increment();
+            }
+        }
+
+        public Snapshot snapshot() {
+            return latency.snapshot();
+        }
+
+        public long getErrorCount() {
+            return errors.sum();
+        }
+    }
+
+    public static class Gauge implements Metric {
+        private final String name;
+        private final DoubleSupplier value;
+
+        Gauge(String name, DoubleSupplier value) {
+            this.name = name;
+            this.value = value;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        public double getValue() {
+            return value.getAsDouble();
+        }
+    }
+
+    private final Map<String, Metric> metrics = new ConcurrentHashMap<>();
+    private final List<Consumer<Metric>> listeners = new CopyOnWriteArrayList<>();
+
+    public Counter counter(String name) {
+        return get(name, Counter.class, () -> new Counter(name));
+    }
+
+    public Histogram histogram(String name) {
+        return get(name, Histogram.class, () -> new Histogram(name));
+    }
+
+    public Timer timer(String name) {
+        return get(name, Timer.class, () -> new Timer(name));
+    }
+
+    /** Registers a value read on demand, replacing any earlier gauge of that name. */
+    public void gauge(String name, DoubleSupplier value) {
+        Gauge gauge = new Gauge(name, value);
+        metrics.put(name, gauge);
+        listeners.forEach(l -> l.accept(gauge));
+    }
+
+    /** All metrics, sorted by name. */
+    public List<Metric> getMetrics() {
+        List<Metric> all = new ArrayList<>(metrics.values());
+        all.sort((a, b) -> a.getName().compareTo(b.getName()));
+        return all;
+    }
+
+    /** Calls {@code listener} for every existing metric and for each one created later. */
+    public void addListener(Consumer<Metric> listener) {
+        listeners.add(listener);
+        metrics.values().forEach(listener);
+    }
+
+    private <M extends Metric> M get(String name, Class<M> type, Supplier<M> factory) {
+        Metric existing = metrics.get(name);
+        if (existing == null) {
+            boolean[] created = new boolean[1];
+            existing = metrics.computeIfAbsent(name, n -> {
+                created[0] = true;
+                return factory.get();
+            });
+            if (created[0]) {
+                Metric metric = existing;
+                listeners.forEach(l -> l.accept(metric));
+            }
+        }
+        if (!type.isInstance(existing))
+            throw new IllegalArgumentException("Metric " + name + " is a " + existing.getClass().getSimpleName()
+                    + ", not a " + type.getSimpleName());
+        return type.cast(existing);
+    }
+}
@@ -0,0 +1,113 @@
+package App;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Amounts of money as a {@code long} number of cents, so that sums are exact
+ * and updating a price or total allocates nothing. In the database they are
+ * DECIMAL(12,2) (see sql/migrations/V6), converted at the JDBC boundary.
+ * Discount rates are whole basis points (1/100 of a percent), DECIMAL(5,4)
+ * in the database.
+ * <p>
+ * Rounding: a discount is taken off the subtotal once, rounded half up to the
+ * cent, never per line. Amounts entered with more than two decimals are
+ * rounded half up as well.
+ */
+public final class Money {
+    public static final int BASIS_POINTS = 10_000;
+
+    private Money() {
+    }
+
+    /**
+     * {@code cents} less {@code basisPoints} of it, with the discount rounded
+     * half up to the cent.
+     */
+    public static long applyDiscount(long cents, int basisPoints) {
+        if (basisPoints == 0)
+            return cents;
+        long discount = (Math.multiplyExact(cents, basisPoints) + BASIS_POINTS / 2) / BASIS_POINTS;
+        return cents - discount;
+    }
+
+    /** A DECIMAL(5,4) rate read from the database (0.1000 for 10%) in basis points, or 0 for SQL NULL. */
+    public static int basisPoints(BigDecimal rate) {
+        return rate == null ? 0 : rate.movePointRight(4).setScale(0, RoundingMode.HALF_UP).intValueExact();
+    }
+
+    public static BigDecimal rateToDecimal(int basisPoints) {
+        return BigDecimal.valueOf(basisPoints, 4);
+    }
+
+    /**
+     * Parses a rate typed by a user as a fraction, like {@code 0.15} for 15%,
+     * into basis points, rounded half up.
+     *
+     * @throws NumberFormatException if it is not a number, or too large
+     */
+    public static int parseRate(String text) {
+        try {
+            return basisPoints(new BigDecimal(text.trim()));
+        } catch (ArithmeticException e) {
+            throw new NumberFormatException("Rate out of range: " + text);
+        }
+    }
+
+    /** A rate as a fraction without trailing zeros, e.g. {@code 0.15}, for form fields. */
+    public static String rateToPlainString(int basisPoints) {
+        return rateToDecimal(basisPoints).stripTrailingZeros().toPlainString();
+    }
+
+    /** {@code 15%}, or {@code 12.5%} for a rate with a fractional percentage. */
+    public static String formatRate(int basisPoints) {
+        return BigDecimal.valueOf(basisPoints, 2).stripTrailingZeros().toPlainString() + "%";
+    }
+
+    /** A DECIMAL read from the database in cents, or 0 for SQL NULL. */
+    public static long fromDecimal(BigDecimal amount) {
+        return amount == null ? 0L : amount.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    public static BigDecimal toDecimal(long cents) {
+        return BigDecimal.valueOf(cents, 2);
+    }
+
+    /**
+     * Parses an amount typed by a user, like {@code 3.5} or {@code 3.50}, into
+     * cents.
+     *
+     * @throws NumberFormatException if it is not a number, or too large
+     */
+    public static long parse(String text) {
+        try {
+            return fromDecimal(new BigDecimal(text.trim()));
+        } catch (ArithmeticException e) {
+            throw new NumberFormatException("Amount out of range: " + text);
+        }
+    }
+
+    /** {@code $3.50}, or {@code -$3.50} for a negative amount. */
+    public static String format(long cents) {
+        return appendTo(new StringBuilder(12), cents).toString();
+    }
+
+    /** Appends {@code cents} as {@link #format} does, without any intermediate objects. */
+    public static StringBuilder appendTo(StringBuilder sb, long cents) {
+        if (cents < 0) {
+            sb.append('-');
+        }
+        long abs = Math.abs(cents);
+        long fraction = abs % 100;
+        sb.append('$').append(abs / 100).append('.');
+        if (fraction < 10) {
+            sb.append('0');
+        }
+        return sb.append(fraction);
+    }
+
+    /** Plain decimal without a currency sign, e.g. {@code 3.50}, for form fields and logs. */
+    public static String toPlainString(long cents) {
+        return toDecimal(cents).toPlainString();
+    }
+}
@@ -0,0 +1,541 @@
+package App;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32C;
+
+/**
+ * Local write-ahead journal of completed orders, so checkout does not wait
+ * for the database. {@link #append} copies the order into a memory-mapped
+ * segment file and returns; from then on the order survives a crash of the
+ * register. A flusher thread forces the written pages to disk every
+ * {@code flushMillis}, so a power cut loses at most that window.
+ * {@link JournalReplayer} writes the orders to the database in the background
+ * and reports each one back with {@link #markReplayed}.
+ * <p>
+ * Segments are named {@code orders-<first sequence>.journal}. Each record is
+ * {@code [int length][int CRC32C][long sequence][payload]}; the checksum
+ * covers the sequence and payload, which holds amounts in cents and the sale
+ * time as epoch milliseconds. The segment header records the payload format,
+ * and a segment of any other format is refused. On open, records are read until the first
+ * one that is incomplete, fails its checksum or is out of sequence, which is
+ * where the previous run stopped writing. The last replayed sequence is kept
+ * in {@code replayed.checkpoint}. It may lag behind, because replaying an
+ * order twice is harmless. Segments whose orders are all replayed are
+ * deleted. A lock file keeps two registers from sharing one directory.
+ */
+public final class OrderJournal implements AutoCloseable {
+    private static final Logger LOGGER = Logger.getLogger(OrderJournal.class.getName());
+    private static final int MAGIC = 0x434F4A31; // "COJ1"
+    private static final int SEGMENT_HEADER = 16; // magic, payload format, first sequence
+    private static final int FORMAT = 1;
+    private static final int RECORD_HEADER = 16; // length, checksum, sequence
+    private static final String SEGMENT_PREFIX = "orders-";
+    private static final String SEGMENT_SUFFIX = ".journal";
+    private static final String CHECKPOINT = "replayed.checkpoint";
+    private static final String REJECTED = "rejected.log";
+
+    /** An order as written to the journal. */
+    public static class Entry {
+        private final long sequence;
+        private final String orderId;
+        private final Instant soldAt;
+        private final long totalCents;
+        private final List<OrderLine> lines;
+
+        Entry(long sequence, String orderId, Instant soldAt, long totalCents, List<OrderLine> lines) {
+            this.sequence = sequence;
+            this.orderId = orderId;
+            this.soldAt = soldAt;
+            this.totalCents = totalCents;
+            this.lines = List.copyOf(lines);
+        }
+
+        public long getSequence() {
+            return sequence;
+        }
+
+        public String getOrderId() {
+            return orderId;
+        }
+
+        public Instant getSoldAt() {
+            return soldAt;
+        }
+
+        public long getTotalCents() {
+            return totalCents;
+        }
+
+        public List<OrderLine> getLines() {
+            return lines;
+        }
+    }
+
+    private static final class Segment {
+        final Path file;
+        final MappedByteBuffer buffer;
+
+        Segment(Path file, MappedByteBuffer buffer) {
+            this.file = file;
+            this.buffer = buffer;
+        }
+    }
+
+    private final Path dir;
+    private final int segmentSize;
+    private final FileChannel lockChannel;
+    private final FileLock lock;
+    private final MetricsRegistry.Timer appendTimer;
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "order-journal-flusher");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final Object checkpointLock = new Object();
+    private long checkpointWritten = -1; // guarded by checkpointLock
+
+    // Guarded by this
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+    private final Deque<Entry> pending = new ArrayDeque<>();
+    private final Map<Integer, Integer> pendingStock = new HashMap<>();
+    private final List<Path> undeletable = new ArrayList<>();
+    private Segment current;
+    private int writePosition;
+    private long nextSequence;
+    private long replayedSequence;
+    private boolean dirty;
+    private boolean closed;
+
+    /**
+     * Opens the journal in {@code dir}, creating it if needed, and recovers
+     * the orders not yet replayed.
+     *
+     * @param segmentBytes size of each segment file; one order takes a few hundred bytes
+     * @param flushMillis  how often written records are forced to disk
+     * @throws IOException if the directory cannot be used or another register holds its lock
+     */
+    public OrderJournal(Path dir, int segmentBytes, long flushMillis, MetricsRegistry metrics) throws IOException {
+        this.dir = dir;
+        this.segmentSize = segmentBytes;
+        Files.createDirectories(dir);
+        this.lockChannel = FileChannel.open(dir.resolve("journal.lock"), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE);
+        FileLock acquired;
+        try {
+            acquired = lockChannel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            acquired = null;
+        }
+        this.lock = acquired;
+        if (lock == null) {
+            lockChannel.close();
+            throw new IOException("Order journal " + dir.toAbsolutePath() + " is in use by another register");
+        }
+        try {
+            recover();
+        } catch (IOException | RuntimeException e) {
+            lock.release();
+            lockChannel.close();
+            throw e;
+        }
+        this.appendTimer = metrics.timer("journal.append");
+        metrics.gauge("journal.backlog", this::getPendingCount);
+        flusher.scheduleWithFixedDelay(this::flushQuietly, flushMillis, flushMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Writes a completed order. Returns once it is in the mapped file, without
+     * waiting for the disk or the database.
+     */
+    public Entry append(String orderId, Instant soldAt, long totalCents, List<OrderLine> lines) throws IOException {
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            byte[] payload = encode(orderId, soldAt, totalCents, lines);
+            if (RECORD_HEADER + payload.length > segmentSize - SEGMENT_HEADER)
+                throw new IOException("Order " + orderId + " is too large for a journal segment");
+            Entry entry;
+            synchronized (this) {
+                if (closed)
+                    throw new IOException("Order journal is closed");
+                if (writePosition + RECORD_HEADER + payload.length > segmentSize) {
+                    current.buffer.force();
+                    current = createSegment(nextSequence);
+                    writePosition = SEGMENT_HEADER;
+                }
+                long sequence = nextSequence;
+                writeRecord(current.buffer, writePosition, sequence, payload);
+                writePosition += RECORD_HEADER + payload.length;
+                nextSequence++;
+                dirty = true;
+
+                entry = new Entry(sequence, orderId, soldAt, totalCents, lines);
+                addPending(entry);
+                notifyAll();
+            }
+            success = true;
+            return entry;
+        } finally {
+            appendTimer.record(start, success);
+        }
+    }
+
+    /** The oldest order not replayed yet, waiting up to {@code timeoutMillis} for one; null if none. */
+    public synchronized Entry awaitPending(long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (pending.isEmpty() && !closed) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0)
+                return null;
+            wait(remaining);
+        }
+        return pending.peekFirst();
+    }
+
+    /** Records that the order with {@code sequence}, and all before it, are in the database. */
+    public void markReplayed(long sequence) throws IOException {
+        List<Segment> obsolete = new ArrayList<>();
+        long checkpoint;
+        synchronized (this) {
+            while (!pending.isEmpty() && pending.peekFirst().getSequence() <= sequence) {
+                Entry entry = pending.removeFirst();
+                for (OrderLine line : entry.getLines()) {
+                    pendingStock.computeIfPresent(line.getProductId(),
+                            (id, qty) -> qty == line.getQuantity() ? null : qty - line.getQuantity());
+                }
+            }
+            replayedSequence = Math.max(replayedSequence, sequence);
+            // A segment is done once the next one starts at or before the first unreplayed sequence
+            while (segments.size() > 1) {
+                Map.Entry<Long, Segment> second = segments.higherEntry(segments.firstKey());
+                if (second.getKey() > replayedSequence + 1)
+                    break;
+                obsolete.add(segments.pollFirstEntry().getValue());
+            }
+            checkpoint = replayedSequence;
+        }
+        // File I/O stays outside the lock that append takes
+        writeCheckpoint(checkpoint);
+        for (Segment segment : obsolete) {
+            delete(segment.file);
+        }
+    }
+
+    /**
+     * Gives up on an order the database keeps refusing: it is appended to
+     * {@code rejected.log} for a manager to enter by hand, then treated as
+     * replayed so the orders behind it are not held up.
+     */
+    public void reject(Entry entry, String reason) throws IOException {
+        StringBuilder line = new StringBuilder();
+        line.append(LocalDateTime.now()).append(" order=").append(entry.getOrderId())
+                .append(" soldAt=").append(entry.getSoldAt())
+                .append(" total=").append(Money.toPlainString(entry.getTotalCents()))
+                .append(" reason=").append(reason.replace('\n', ' '));
+        for (OrderLine orderLine : entry.getLines()) {
+            line.append(" | product ").append(orderLine.getProductId()).append(' ').append(orderLine);
+        }
+        line.append(System.lineSeparator());
+        Files.writeString(dir.resolve(REJECTED), line, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        markReplayed(entry.getSequence());
+    }
+
+    public synchronized int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Units per product id sold in journaled orders that are not in the
+     * database yet; stock read from the database is that much too high.
+     */
+    public synchronized Map<Integer, Integer> getPendingStock() {
+        return new HashMap<>(pendingStock);
+    }
+
+    /** Forces everything appended so far to disk. */
+    public void flush() {
+        Segment segment;
+        synchronized (this) {
+            if (!dirty || closed)
+                return;
+            dirty = false;
+            segment = current;
+        }
+        // Forcing outside the lock lets appends continue meanwhile
+        segment.buffer.force();
+    }
+
+    @Override
+    public void close() {
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            if (closed)
+                return;
+            current.buffer.force();
+            closed = true;
+            notifyAll();
+        }
+        try {
+            lock.release();
+            lockChannel.close();
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to release the order journal lock", e);
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (UncheckedIOException | IllegalStateException e) {
+            // An exception would cancel the scheduled flush for good
+            LOGGER.log(Level.WARNING, "Failed to flush the order journal", e);
+        }
+    }
+
+    private void recover() throws IOException {
+        replayedSequence = readCheckpoint();
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            stream.forEach(files::add);
+        }
+        files.sort((a, b) -> Long.compare(firstSequenceOf(a), firstSequenceOf(b)));
+
+        long expected = -1;
+        for (Path file : files) {
+            MappedByteBuffer buffer = map(file, Files.size(file));
+            if (buffer.capacity() < SEGMENT_HEADER || buffer.getInt(0) != MAGIC)
+                throw new IOException("Not an order journal segment: " + file);
+            int format = buffer.getInt(4);
+            if (format != FORMAT)
+                throw new IOException("Order journal segment " + file + " has unknown format " + format);
+            long first = buffer.getLong(8);
+            if (expected != -1 && first != expected) {
+                LOGGER.warning("Order journal segment " + file + " starts at " + first + ", expected " + expected);
+            }
+            Segment segment = new Segment(file, buffer);
+            segments.put(first, segment);
+            current = segment;
+
+            long sequence = first;
+            int position = SEGMENT_HEADER;
+            while (true) {
+                byte[] payload = readRecord(buffer, position, sequence);
+                if (payload == null)
+                    break;
+                if (sequence > replayedSequence) {
+                    addPending(decode(sequence, payload));
+                }
+                position += RECORD_HEADER + payload.length;
+                sequence++;
+            }
+            writePosition = position;
+            expected = sequence;
+        }
+
+        nextSequence = Math.max(expected, replayedSequence + 1);
+        if (current == null || current.buffer.capacity() != segmentSize || nextSequence != expected) {
+            current = createSegment(nextSequence);
+            writePosition = SEGMENT_HEADER;
+        } else {
+            // Clear what a torn write may have left behind the last good record
+            ByteBuffer tail = current.buffer.duplicate();
+            tail.position(writePosition);
+            while (tail.hasRemaining()) {
+                tail.put((byte) 0);
+            }
+            current.buffer.force();
+        }
+        // Segments before the first unreplayed sequence are no longer needed
+        markReplayed(replayedSequence);
+        if (!pending.isEmpty()) {
+            LOGGER.info("Order journal has " + pending.size() + " order(s) not yet written to the database");
+        }
+    }
+
+    private Segment createSegment(long firstSequence) throws IOException {
+        Path file = dir.resolve(String.format("%s%016d%s", SEGMENT_PREFIX, firstSequence, SEGMENT_SUFFIX));
+        MappedByteBuffer buffer = map(file, segmentSize);
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, FORMAT);
+        buffer.putLong(8, firstSequence);
+        buffer.force();
+        Segment segment = new Segment(file, buffer);
+        segments.put(firstSequence, segment);
+        return segment;
+    }
+
+    private static MappedByteBuffer map(Path file, long size) throws IOException {
+        // The mapping stays valid after the channel is closed
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+    }
+
+    private static long firstSequenceOf(Path file) {
+        String name = file.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    private static void writeRecord(MappedByteBuffer buffer, int position, long sequence, byte[] payload) {
+        buffer.putLong(position + 8, sequence);
+        buffer.put(position + RECORD_HEADER, payload);
+        buffer.putInt(position + 4, checksum(sequence, payload));
+        // The length goes last: a record without one is treated as never written
+        buffer.putInt(position, payload.length);
+    }
+
+    /** The payload of the record at {@code position}, or null if there is no valid record there. */
+    private static byte[] readRecord(MappedByteBuffer buffer, int position, long expectedSequence) {
+        if (position + RECORD_HEADER > buffer.capacity())
+            return null;
+        int length = buffer.getInt(position);
+        if (length <= 0 || length > buffer.capacity() - position - RECORD_HEADER)
+            return null;
+        long sequence = buffer.getLong(position + 8);
+        if (sequence != expectedSequence)
+            return null;
+        byte[] payload = new byte[length];
+        buffer.get(position + RECORD_HEADER, payload);
+        return checksum(sequence, payload) == buffer.getInt(position + 4) ? payload : null;
+    }
+
+    private static int checksum(long sequence, byte[] payload) {
+        CRC32C crc = new CRC32C();
+        crc.update(ByteBuffer.allocate(8).putLong(0, sequence));
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    private static byte[] encode(String orderId, Instant soldAt, long totalCents, List<OrderLine> lines) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeUTF(orderId);
+            out.writeLong(soldAt.toEpochMilli());
+            out.writeLong(totalCents);
+            out.writeInt(lines.size());
+            for (OrderLine line : lines) {
+                out.writeInt(line.getProductId());
+                out.writeUTF(line.getProductName());
+                out.writeUTF(line.getVariant() == null ? "" : line.getVariant().name());
+                out.writeInt(line.getQuantity());
+                out.writeLong(line.getUnitPriceCents());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Entry decode(long sequence, byte[] payload) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+            String orderId = in.readUTF();
+            Instant soldAt = Instant.ofEpochMilli(in.readLong());
+            long totalCents = in.readLong();
+            int count = in.readInt();
+            List<OrderLine> lines = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                int productId = in.readInt();
+                String productName = in.readUTF();
+                String variant = in.readUTF();
+                int quantity = in.readInt();
+                long unitPriceCents = in.readLong();
+                lines.add(new OrderLine(productId, productName, variant.isEmpty() ? null : Variant.valueOf(variant),
+                        quantity, unitPriceCents));
+            }
+            return new Entry(sequence, orderId, soldAt, totalCents, lines);
+        }
+    }
+
+    private void addPending(Entry entry) {
+        pending.addLast(entry);
+        for (OrderLine line : entry.getLines()) {
+            pendingStock.merge(line.getProductId(), line.getQuantity(), Integer::sum);
+        }
+    }
+
+    private long readCheckpoint() throws IOException {
+        Path file = dir.resolve(CHECKPOINT);
+        if (!Files.exists(file))
+            return 0;
+        try {
+            return Long.parseLong(Files.readString(file).trim());
+        } catch (NumberFormatException e) {
+            // Replaying is idempotent, so starting over is safe, only slower
+            LOGGER.warning("Ignoring unreadable order journal checkpoint " + file);
+            return 0;
+        }
+    }
+
+    private void writeCheckpoint(long sequence) throws IOException {
+        // Written under the lock, so an older checkpoint can never replace a newer one
+        synchronized (checkpointLock) {
+            if (sequence <= checkpointWritten)
+                return;
+            Path file = dir.resolve(CHECKPOINT);
+            Path temp = dir.resolve(CHECKPOINT + ".tmp");
+            Files.writeString(temp, Long.toString(sequence));
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            checkpointWritten = sequence;
+        }
+    }
+
+    /** Deletes a replayed segment; where a mapped file cannot be deleted (Windows) it is retried later. */
+    private void delete(Path file) {
+        List<Path> retry;
+        synchronized (this) {
+            undeletable.add(file);
+            retry = new ArrayList<>(undeletable);
+            undeletable.clear();
+        }
+        for (Path path : retry) {
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                LOGGER.log(Level.FINE, "Cannot delete replayed journal segment " + path + " yet", e);
+                synchronized (this) {
+                    undeletable.add(path);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package App;
+
+/**
+ * One line of the order currently being rung up. Kept as typed fields so
+ * checkout and persistence never have to parse the rendered text back.
+ */
+public class OrderLine {
+    private final int productId;
+    private final String productName;
+    private final Variant variant; // null for products without hot/cold options
+    private final int quantity;
+    private final long unitPriceCents;
+    private final String displayName;
+
+    public OrderLine(int productId, String productName, Variant variant, int quantity, long unitPriceCents) {
+        this.productId = productId;
+        this.productName = productName;
+        this.variant = variant;
+        this.quantity = quantity;
+        this.unitPriceCents = unitPriceCents;
+        this.displayName = variant == null ? productName : productName + " (" + variant.getLabel() + ")";
+    }
+
+    public int getProductId() {
+        return productId;
+    }
+
+    public String getProductName() {
+        return productName;
+    }
+
+    public Variant getVariant() {
+        return variant;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public long getUnitPriceCents() {
+        return unitPriceCents;
+    }
+
+    public long getLinePriceCents() {
+        return unitPriceCents * quantity;
+    }
+
+    /** Name as stored in invoice_items.product_name, e.g. "Latte (Hot)". */
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(displayName.length() + 20);
+        sb.append(displayName).append(" x").append(quantity).append(" - ");
+        return Money.appendTo(sb, getLinePriceCents()).toString();
+    }
+}
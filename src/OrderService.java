@@ -0,0 +1,180 @@
+package App;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.IntFunction;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Ordering engine without any UI: carts, stock reservation, pricing,
+ * discounts and checkout. The JavaFX screens are one client; benchmarks and
+ * load tests drive it directly. Thread-safe — any number of carts may be
+ * worked on concurrently, and a cart may be touched from several threads.
+ * Locks are always taken cart first, then product.
+ * <p>
+ * With an {@link OrderJournal}, checkout appends the order to the journal and
+ * completes at once; {@link JournalReplayer} writes it to the database later.
+ * Without one, or if the journal cannot be written, checkout waits for the
+ * invoice to be committed.
+ * <p>
+ * Checkouts are timed as {@code checkout} (from the call until the order is
+ * journaled or committed) on the data access's metrics, next to its
+ * {@code db.checkout}.
+ */
+public class OrderService {
+    private static final Logger LOGGER = Logger.getLogger(OrderService.class.getName());
+    private static final DateTimeFormatter RECEIPT_TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    public enum AddResult {
+        ADDED,
+        OUT_OF_STOCK,
+        CHECKOUT_IN_PROGRESS
+    }
+
+    private final DataAccess dataAccess;
+    private final DiscountCodeIndex discountCodes;
+    private final IntFunction<Product> catalog;
+    private final OrderJournal journal;
+    private final MetricsRegistry.Timer checkoutTimer;
+    private final MetricsRegistry.Counter outOfStock;
+
+    /**
+     * @param catalog looks up the current in-memory product by id, used to
+     *                hand stock back when a cart is cancelled
+     */
+    public OrderService(DataAccess dataAccess, DiscountCodeIndex discountCodes, IntFunction<Product> catalog) {
+        this(dataAccess, discountCodes, catalog, null);
+    }
+
+    /** @param journal where completed orders go first, or null to write them to the database directly */
+    public OrderService(DataAccess dataAccess, DiscountCodeIndex discountCodes, IntFunction<Product> catalog,
+            OrderJournal journal) {
+        this.dataAccess = dataAccess;
+        this.discountCodes = discountCodes;
+        this.catalog = catalog;
+        this.journal = journal;
+        this.checkoutTimer = dataAccess.getMetrics().timer("checkout");
+        this.outOfStock = dataAccess.getMetrics().counter("order.outOfStock");
+    }
+
+    public Cart newCart() {
+        return new Cart();
+    }
+
+    /** Adds a line and reserves its stock from the in-memory product. */
+    public AddResult addItem(Cart cart, Product product, Variant variant, int quantity) {
+        if (quantity <= 0)
+            throw new IllegalArgumentException("Quantity must be positive: " + quantity);
+        synchronized (cart) {
+            if (cart.isCheckingOut())
+                return AddResult.CHECKOUT_IN_PROGRESS;
+            synchronized (product) {
+                if (product.getStock() < quantity) {
+                    outOfStock.increment();
+                    return AddResult.OUT_OF_STOCK;
+                }
+                product.setStock(product.getStock() - quantity);
+            }
+            cart.addLine(new OrderLine(product.getId(), product.getName(), variant, quantity, product.getPriceCents()));
+        }
+        return AddResult.ADDED;
+    }
+
+    /**
+     * Applies a discount code to the cart and counts its use.
+     *
+     * @return the applied code, or null if it is unknown or inactive
+     */
+    public DiscountCode applyDiscount(Cart cart, String code) {
+        DiscountCode found = discountCodes.find(code);
+        if (found == null || !found.isActive())
+            return null;
+        synchronized (cart) {
+            if (cart.isCheckingOut())
+                return null;
+            cart.setDiscount(found);
+        }
+        discountCodes.recordUse(found);
+        return found;
+    }
+
+    /** Empties the cart and gives its reserved stock back. Does nothing while a checkout is running. */
+    public void cancel(Cart cart) {
+        Map<Integer, Integer> released;
+        synchronized (cart) {
+            if (cart.isCheckingOut())
+                return;
+            released = cart.clear();
+        }
+        for (Map.Entry<Integer, Integer> entry : released.entrySet()) {
+            Product product = catalog.apply(entry.getKey());
+            if (product != null) {
+                synchronized (product) {
+                    product.setStock(product.getStock() + entry.getValue());
+                }
+            }
+        }
+    }
+
+    /**
+     * Persists the cart as an invoice and takes its stock in the database, or
+     * journals it for that. The cart is locked until the outcome is known; on
+     * success it is emptied (its stock is sold), on failure it is left as it
+     * was so the order can be retried or cancelled. A journaled order's receipt
+     * has invoice id 0, as the invoice does not exist yet.
+     */
+    public CompletableFuture<Receipt> checkout(Cart cart) {
+        long start = System.nanoTime();
+        List<OrderLine> lines;
+        Map<Integer, Integer> stockDecrements;
+        long totalCents;
+        synchronized (cart) {
+            if (cart.isCheckingOut())
+                return CompletableFuture.failedFuture(new IllegalStateException("Checkout already in progress"));
+            if (cart.isEmpty())
+                return CompletableFuture.failedFuture(new IllegalStateException("The cart is empty"));
+            lines = cart.getLines();
+            stockDecrements = cart.getReserved();
+            totalCents = cart.getTotalCents();
+            cart.setCheckingOut(true);
+        }
+        String orderId = UUID.randomUUID().toString().replace("-", "").substring(0, 12).toUpperCase();
+        Instant soldAt = Instant.now();
+        String dateTime = LocalDateTime.ofInstant(soldAt, ZoneId.systemDefault()).format(RECEIPT_TIME);
+
+        if (journal != null) {
+            try {
+                journal.append(orderId, soldAt, totalCents, lines);
+                synchronized (cart) {
+                    cart.clear();
+                    cart.setCheckingOut(false);
+                }
+                checkoutTimer.record(start, true);
+                return CompletableFuture.completedFuture(new Receipt(0, orderId, dateTime, lines, totalCents));
+            } catch (IOException | RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Could not journal order " + orderId + "; writing it to the database", e);
+            }
+        }
+
+        return dataAccess
+                .submit("checkout", conn -> new CheckoutWriter(conn).write(orderId, totalCents, lines, stockDecrements))
+                .whenComplete((invoiceId, failure) -> {
+                    synchronized (cart) {
+                        if (failure == null) {
+                            cart.clear();
+                        }
+                        cart.setCheckingOut(false);
+                    }
+                    checkoutTimer.record(start, failure == null);
+                })
+                .thenApply(invoiceId -> new Receipt(invoiceId, orderId, dateTime, lines, totalCents));
+    }
+}
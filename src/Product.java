@@ -4,21 +4,27 @@ public class Product {
     private int id;
     private String name;
     private String imageName;
-    private double price;
+    private long priceCents;
     private int stock;
     private Category category;
+    private int version;
 
-    public Product(int id, String name, String imageName, double price, int stock, Category category) {
+    public Product(int id, String name, String imageName, long priceCents, int stock, Category category) {
         this.id = id;
         this.name = name;
         this.imageName = imageName;
-        this.price = price;
+        this.priceCents = priceCents;
         this.stock = stock;
         this.category = category;
     }
 
-    public Product(String name, String imageName, double price, int stock, Category category) {
-        this(0, name, imageName, price, stock, category);
+    public Product(String name, String imageName, long priceCents, int stock, Category category) {
+        this(0, name, imageName, priceCents, stock, category);
+    }
+
+    public Product(Product other) {
+        this(other.id, other.name, other.imageName, other.priceCents, other.stock, other.category);
+        this.version = other.version;
     }
 
     public int getId() {
@@ -45,12 +51,13 @@ public class Product {
         this.imageName = imageName;
     }
 
-    public double getPrice() {
-        return price;
+    /** Price in cents; see {@link Money}. */
+    public long getPriceCents() {
+        return priceCents;
     }
 
-    public void setPrice(double price) {
-        this.price = price;
+    public void setPriceCents(long priceCents) {
+        this.priceCents = priceCents;
     }
 
     public int getStock() {
@@ -68,4 +75,13 @@ public class Product {
     public void setCategory(Category category) {
         this.category = category;
     }
+
+    /** Row version in the database; see {@link ProductWriter}. */
+    public int getVersion() {
+        return version;
+    }
+
+    public void setVersion(int version) {
+        this.version = version;
+    }
 }
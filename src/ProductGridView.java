@@ -0,0 +1,76 @@
+package App;
+
+import javafx.geometry.Pos;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
+import javafx.scene.layout.HBox;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Virtualized product grid: a ListView whose rows each hold up to
+ * {@link #COLUMNS} {@link ProductTile}s. Only the visible rows have nodes, and
+ * those are rebound rather than rebuilt when the user scrolls or the filter
+ * changes.
+ */
+public class ProductGridView {
+    public static final int COLUMNS = 3;
+
+    private final ListView<List<Product>> listView = new ListView<>();
+    // Per-product quantity selection, kept outside the recycled tiles
+    private final Map<Integer, Integer> quantities = new HashMap<>();
+
+    public ProductGridView(ImageCache imageCache, ProductTile.AddHandler addHandler) {
+        listView.getStyleClass().add("product-grid");
+        listView.setFocusTraversable(false);
+        listView.setCellFactory(lv -> new RowCell(imageCache, addHandler));
+    }
+
+    public ListView<List<Product>> getNode() {
+        return listView;
+    }
+
+    public void setProducts(List<Product> products) {
+        List<List<Product>> rows = new ArrayList<>((products.size() + COLUMNS - 1) / COLUMNS);
+        for (int i = 0; i < products.size(); i += COLUMNS) {
+            rows.add(products.subList(i, Math.min(i + COLUMNS, products.size())));
+        }
+        listView.getItems().setAll(rows);
+    }
+
+    /** Re-renders visible tiles, e.g. after a price or stock change. */
+    public void refresh() {
+        listView.refresh();
+    }
+
+    private class RowCell extends ListCell<List<Product>> {
+        private final HBox row = new HBox(15);
+        private final ProductTile[] tiles = new ProductTile[COLUMNS];
+
+        RowCell(ImageCache imageCache, ProductTile.AddHandler addHandler) {
+            row.setAlignment(Pos.TOP_LEFT);
+            for (int i = 0; i < COLUMNS; i++) {
+                tiles[i] = new ProductTile(imageCache, quantities, addHandler);
+            }
+            setText(null);
+        }
+
+        @Override
+        protected void updateItem(List<Product> rowProducts, boolean empty) {
+            super.updateItem(rowProducts, empty);
+            if (empty || rowProducts == null) {
+                setGraphic(null);
+                return;
+            }
+            row.getChildren().clear();
+            for (int i = 0; i < rowProducts.size(); i++) {
+                tiles[i].bind(rowProducts.get(i));
+                row.getChildren().add(tiles[i]);
+            }
+            setGraphic(row);
+        }
+    }
+}
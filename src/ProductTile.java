@@ -0,0 +1,113 @@
+package App;
+
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.scene.image.ImageView;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.VBox;
+
+import java.util.Map;
+
+/**
+ * A reusable product tile. The nodes are built once and re-pointed at a
+ * different product with {@link #bind}; the selected quantity lives in a map
+ * shared by all tiles, so it survives the tile being recycled.
+ */
+public final class ProductTile extends VBox {
+    /** Width and height of the product image, also used to preload the images at this size. */
+    public static final double IMAGE_SIZE = 80;
+
+    @FunctionalInterface
+    public interface AddHandler {
+        void add(Product product, Variant variant, int quantity);
+    }
+
+    private final ImageCache imageCache;
+    private final Map<Integer, Integer> quantities;
+
+    private final ImageView imageView = new ImageView();
+    private final Label nameLbl = new Label();
+    private final Label priceLbl = new Label();
+    private final Label qtyLbl = new Label("1");
+    private final HBox drinkOpts;
+    private final Button addBtn = new Button("Add");
+
+    private Product product;
+
+    public ProductTile(ImageCache imageCache, Map<Integer, Integer> quantities, AddHandler addHandler) {
+        super(5);
+        this.imageCache = imageCache;
+        this.quantities = quantities;
+        getStyleClass().add("product-box");
+        setPadding(new Insets(5));
+
+        imageView.setFitWidth(IMAGE_SIZE);
+        imageView.setFitHeight(IMAGE_SIZE);
+        imageView.setPreserveRatio(true);
+
+        nameLbl.getStyleClass().add("product-name");
+        priceLbl.getStyleClass().add("product-price");
+
+        HBox qtyBox = new HBox(5);
+        qtyBox.setAlignment(Pos.CENTER_LEFT);
+        qtyBox.getStyleClass().add("quantity-box");
+
+        Button minusBtn = new Button("-");
+        minusBtn.getStyleClass().add("quantity-button");
+        qtyLbl.getStyleClass().add("quantity-label");
+        Button plusBtn = new Button("+");
+        plusBtn.getStyleClass().add("quantity-button");
+
+        minusBtn.setOnAction(e -> {
+            if (quantity() > 1) {
+                setQuantity(quantity() - 1);
+            }
+        });
+        plusBtn.setOnAction(e -> {
+            if (quantity() < product.getStock()) {
+                setQuantity(quantity() + 1);
+            }
+        });
+        qtyBox.getChildren().addAll(minusBtn, qtyLbl, plusBtn);
+
+        Button coldBtn = new Button("Cold");
+        coldBtn.getStyleClass().add("nav-button");
+        coldBtn.setOnAction(e -> addHandler.add(product, Variant.COLD, quantity()));
+
+        Button hotBtn = new Button("Hot");
+        hotBtn.getStyleClass().add("nav-button");
+        hotBtn.setOnAction(e -> addHandler.add(product, Variant.HOT, quantity()));
+
+        drinkOpts = new HBox(5, coldBtn, hotBtn);
+
+        addBtn.getStyleClass().add("nav-button");
+        addBtn.setOnAction(e -> addHandler.add(product, null, quantity()));
+
+        getChildren().addAll(imageView, nameLbl, priceLbl, qtyBox, drinkOpts, addBtn);
+    }
+
+    public void bind(Product product) {
+        this.product = product;
+        imageCache.load(imageView, product.getImageName(), IMAGE_SIZE, IMAGE_SIZE);
+        nameLbl.setText(product.getName());
+        priceLbl.setText(Money.format(product.getPriceCents()));
+        qtyLbl.setText(String.valueOf(quantity()));
+
+        boolean drink = product.getCategory() == Category.DRINK;
+        drinkOpts.setVisible(drink);
+        drinkOpts.setManaged(drink);
+        addBtn.setVisible(!drink);
+        addBtn.setManaged(!drink);
+    }
+
+    private int quantity() {
+        return quantities.getOrDefault(product.getId(), 1);
+    }
+
+    private void setQuantity(int quantity) {
+        quantities.put(product.getId(), quantity);
+        qtyLbl.setText(String.valueOf(quantity));
+    }
+}
@@ -0,0 +1,194 @@
+package App;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Admin updates and deletes of products with optimistic concurrency (see
+ * sql/migrations/V4). A write only applies while the row still has the
+ * version the admin's form was loaded with; nothing is locked while the form
+ * is open, so checkout never waits for an admin.
+ * <p>
+ * Stock is written as the difference between what the admin entered and what
+ * the form showed, like checkout decrements, so sales made meanwhile are
+ * kept. If another admin changed the row, fields that only one side changed
+ * are merged and the update is retried. Fields both sides changed to
+ * different values are returned as conflicts for the admin to resolve.
+ */
+public class ProductWriter {
+    private static final int MAX_ATTEMPTS = 3;
+
+    private static final String SELECT_PRODUCT =
+            "SELECT id, name, image_name, price, stock, category, version FROM products WHERE id = ?";
+    private static final String COMPARE_AND_SET =
+            "UPDATE products SET name = ?, image_name = ?, price = ?, category = ?, stock = GREATEST(stock + ?, 0), "
+            + "version = version + 1, change_version = ? WHERE id = ? AND version = ?";
+    private static final String DELETE_IF_UNCHANGED = "DELETE FROM products WHERE id = ? AND version = ?";
+
+    public enum Outcome {
+        SAVED,
+        /** Another admin changed the row; see {@link Result#getConflicts()}. */
+        CONFLICT,
+        DELETED
+    }
+
+    public static class Result {
+        private final Outcome outcome;
+        private final Product current;
+        private final List<String> conflicts;
+
+        Result(Outcome outcome, Product current, List<String> conflicts) {
+            this.outcome = outcome;
+            this.current = current;
+            this.conflicts = conflicts;
+        }
+
+        public Outcome getOutcome() {
+            return outcome;
+        }
+
+        /** The row as it is now in the database, or null if it was deleted. */
+        public Product getCurrent() {
+            return current;
+        }
+
+        /**
+         * One line per field both admins changed, empty if the row only kept
+         * changing while the update was retried.
+         */
+        public List<String> getConflicts() {
+            return conflicts;
+        }
+    }
+
+    private final CatalogChanges changes;
+    private final Connection connection;
+
+    public ProductWriter(Connection connection) {
+        this.connection = connection;
+        this.changes = new CatalogChanges(connection);
+    }
+
+    /**
+     * Saves the admin's edits of a product.
+     *
+     * @param original  the product as the form showed it, including its version
+     * @param edited    the values entered in the form
+     * @param overwrite whether the admin's values win fields that were changed
+     *                  by someone else too
+     */
+    public Result update(Product original, Product edited, boolean overwrite) throws SQLException {
+        int stockDelta = edited.getStock() - original.getStock();
+        int expectedVersion = original.getVersion();
+        Product values = edited;
+        for (int attempt = 1;; attempt++) {
+            int version = expectedVersion;
+            Product row = values;
+            int updated = changes.stamped(catalogVersion -> compareAndSet(row, stockDelta, version, catalogVersion));
+            Product current = read(original.getId());
+            if (current == null)
+                return new Result(Outcome.DELETED, null, List.of());
+            if (updated == 1)
+                return new Result(Outcome.SAVED, current, List.of());
+
+            List<String> conflicts = overwrite ? List.of() : conflicts(original, edited, current);
+            if (!conflicts.isEmpty() || attempt == MAX_ATTEMPTS)
+                return new Result(Outcome.CONFLICT, current, conflicts);
+            values = merge(original, edited, current);
+            expectedVersion = current.getVersion();
+        }
+    }
+
+    /**
+     * Deletes the product if nobody changed it since {@code original} was
+     * read. A product that is already gone counts as deleted.
+     */
+    public Result delete(Product original) throws SQLException {
+        int deleted = changes.stamped(catalogVersion -> {
+            try (PreparedStatement ps = connection.prepareStatement(DELETE_IF_UNCHANGED)) {
+                ps.setInt(1, original.getId());
+                ps.setInt(2, original.getVersion());
+                int rows = ps.executeUpdate();
+                if (rows > 0) {
+                    changes.recordDeletion(CatalogChanges.PRODUCT, original.getId(), catalogVersion);
+                }
+                return rows;
+            }
+        });
+        if (deleted == 1)
+            return new Result(Outcome.DELETED, null, List.of());
+        Product current = read(original.getId());
+        return current == null
+                ? new Result(Outcome.DELETED, null, List.of())
+                : new Result(Outcome.CONFLICT, current, List.of());
+    }
+
+    public Product read(int productId) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement(SELECT_PRODUCT)) {
+            ps.setInt(1, productId);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next())
+                    return null;
+                Product p = new Product(rs.getInt("id"), rs.getString("name"), rs.getString("image_name"),
+                        Money.fromDecimal(rs.getBigDecimal("price")), rs.getInt("stock"), Category.fromColumn(rs.getString("category")));
+                p.setVersion(rs.getInt("version"));
+                return p;
+            }
+        }
+    }
+
+    private int compareAndSet(Product values, int stockDelta, int expectedVersion, long catalogVersion)
+            throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement(COMPARE_AND_SET)) {
+            ps.setString(1, values.getName());
+            ps.setString(2, values.getImageName());
+            ps.setBigDecimal(3, Money.toDecimal(values.getPriceCents()));
+            ps.setString(4, values.getCategory().name());
+            ps.setInt(5, stockDelta);
+            ps.setLong(6, catalogVersion);
+            ps.setInt(7, values.getId());
+            ps.setInt(8, expectedVersion);
+            return ps.executeUpdate();
+        }
+    }
+
+    /** The admin's value for the fields they changed, the current value for the rest. */
+    static Product merge(Product original, Product edited, Product current) {
+        Product merged = new Product(current);
+        if (!Objects.equals(edited.getName(), original.getName())) {
+            merged.setName(edited.getName());
+        }
+        if (!Objects.equals(edited.getImageName(), original.getImageName())) {
+            merged.setImageName(edited.getImageName());
+        }
+        if (edited.getPriceCents() != original.getPriceCents()) {
+            merged.setPriceCents(edited.getPriceCents());
+        }
+        if (edited.getCategory() != original.getCategory()) {
+            merged.setCategory(edited.getCategory());
+        }
+        return merged;
+    }
+
+    static List<String> conflicts(Product original, Product edited, Product current) {
+        List<String> conflicts = new ArrayList<>();
+        addIfConflicting(conflicts, "Name", original.getName(), edited.getName(), current.getName());
+        addIfConflicting(conflicts, "Image", original.getImageName(), edited.getImageName(), current.getImageName());
+        addIfConflicting(conflicts, "Price", Money.format(original.getPriceCents()),
+                Money.format(edited.getPriceCents()), Money.format(current.getPriceCents()));
+        addIfConflicting(conflicts, "Category", original.getCategory(), edited.getCategory(), current.getCategory());
+        return conflicts;
+    }
+
+    private static void addIfConflicting(List<String> conflicts, String field, Object original, Object mine,
+            Object theirs) {
+        if (!Objects.equals(mine, original) && !Objects.equals(theirs, original) && !Objects.equals(mine, theirs)) {
+            conflicts.add(field + ": yours " + mine + ", now " + theirs);
+        }
+    }
+}
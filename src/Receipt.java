@@ -0,0 +1,41 @@
+package App;
+
+import java.util.List;
+
+/** Outcome of a successful checkout, as shown and printed for the customer. */
+public class Receipt {
+    private final int invoiceId;
+    private final String orderId;
+    private final String dateTime;
+    private final List<OrderLine> lines;
+    private final long totalCents;
+
+    public Receipt(int invoiceId, String orderId, String dateTime, List<OrderLine> lines, long totalCents) {
+        this.invoiceId = invoiceId;
+        this.orderId = orderId;
+        this.dateTime = dateTime;
+        this.lines = List.copyOf(lines);
+        this.totalCents = totalCents;
+    }
+
+    /** The invoice's id, or 0 if the order was journaled and is not in the database yet. */
+    public int getInvoiceId() {
+        return invoiceId;
+    }
+
+    public String getOrderId() {
+        return orderId;
+    }
+
+    public String getDateTime() {
+        return dateTime;
+    }
+
+    public List<OrderLine> getLines() {
+        return lines;
+    }
+
+    public long getTotalCents() {
+        return totalCents;
+    }
+}
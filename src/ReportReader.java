@@ -0,0 +1,91 @@
+package App;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Queries behind the admin reports. Sales figures come from the rollup tables
+ * CheckoutWriter maintains, never from invoices or invoice_items, so their
+ * cost does not grow with the sales history.
+ */
+public class ReportReader {
+    private static final String SELECT_DAILY_SALES =
+            "SELECT sale_date, total FROM daily_sales ORDER BY sale_date DESC LIMIT ?";
+    private static final String SELECT_TOP_PRODUCTS_SINCE =
+            "SELECT ps.product_id, MAX(p.name) as name, SUM(ps.quantity) as total_sold " +
+            "FROM product_sales ps LEFT JOIN products p ON p.id = ps.product_id " +
+            "WHERE ps.sale_date >= ? " +
+            "GROUP BY ps.product_id ORDER BY total_sold DESC LIMIT ?";
+    private static final String SELECT_TOP_PRODUCTS_ALL_TIME =
+            "SELECT ps.product_id, MAX(p.name) as name, SUM(ps.quantity) as total_sold " +
+            "FROM product_sales_total ps LEFT JOIN products p ON p.id = ps.product_id " +
+            "GROUP BY ps.product_id ORDER BY total_sold DESC LIMIT ?";
+    private static final String SELECT_LOW_STOCK =
+            "SELECT name, stock FROM products WHERE stock < ? ORDER BY stock ASC";
+
+    private final Connection connection;
+
+    public ReportReader(Connection connection) {
+        this.connection = connection;
+    }
+
+    /** Sales per day, newest first, for at most {@code days} trading days. */
+    public List<DailySale> loadDailySales(int days) throws SQLException {
+        List<DailySale> dailySales = new ArrayList<>();
+        try (PreparedStatement ps = connection.prepareStatement(SELECT_DAILY_SALES)) {
+            ps.setInt(1, days);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    dailySales.add(new DailySale(rs.getDate("sale_date"), Money.fromDecimal(rs.getBigDecimal("total"))));
+                }
+            }
+        }
+        return dailySales;
+    }
+
+    /** Best sellers by units in the window, hot and cold sales of a product counted together. */
+    public List<TopProduct> loadTopProducts(SalesWindow window, int limit) throws SQLException {
+        List<TopProduct> topProducts = new ArrayList<>();
+        boolean allTime = window.getDaysBack() < 0;
+        try (PreparedStatement ps = connection.prepareStatement(
+                allTime ? SELECT_TOP_PRODUCTS_ALL_TIME : SELECT_TOP_PRODUCTS_SINCE)) {
+            if (allTime) {
+                ps.setInt(1, limit);
+            } else {
+                // Cut-off as a parameter rather than INTERVAL arithmetic so the query also runs on H2
+                ps.setDate(1, Date.valueOf(LocalDate.now().minusDays(window.getDaysBack())));
+                ps.setInt(2, limit);
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    String name = rs.getString("name");
+                    if (name == null) {
+                        name = "Deleted product #" + rs.getInt("product_id");
+                    }
+                    topProducts.add(new TopProduct(name, rs.getInt("total_sold")));
+                }
+            }
+        }
+        return topProducts;
+    }
+
+    /** Products with less than {@code threshold} left, lowest stock first. */
+    public List<LowStockItem> loadLowStock(int threshold) throws SQLException {
+        List<LowStockItem> lowStockItems = new ArrayList<>();
+        try (PreparedStatement ps = connection.prepareStatement(SELECT_LOW_STOCK)) {
+            ps.setInt(1, threshold);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    lowStockItems.add(new LowStockItem(rs.getString("name"), rs.getInt("stock")));
+                }
+            }
+        }
+        return lowStockItems;
+    }
+}
@@ -0,0 +1,31 @@
+package App;
+
+/** Time windows the sales reports can be served for from the rollup tables. */
+public enum SalesWindow {
+    TODAY("Today", 0),
+    LAST_7_DAYS("Last 7 days", 6),
+    LAST_30_DAYS("Last 30 days", 29),
+    ALL_TIME("All time", -1);
+
+    private final String label;
+    private final int daysBack;
+
+    SalesWindow(String label, int daysBack) {
+        this.label = label;
+        this.daysBack = daysBack;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    /** Days before today included in the window, or -1 for no lower bound. */
+    public int getDaysBack() {
+        return daysBack;
+    }
+
+    @Override
+    public String toString() {
+        return label;
+    }
+}
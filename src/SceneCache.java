@@ -0,0 +1,114 @@
+package App;
+
+import javafx.scene.Group;
+import javafx.scene.Parent;
+import javafx.scene.Scene;
+import javafx.stage.Stage;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * Keeps the screens of the main window alive between visits, so going back to
+ * a screen only refreshes its data instead of rebuilding its controls and
+ * styling them again. At most {@code maxScreens} screens are kept besides the
+ * pinned ones, least recently shown evicted first, so rarely used admin
+ * screens do not stay in memory. Must only be used from the FX Application
+ * Thread.
+ * <p>
+ * {@code ui.screenCache.hits} and {@code ui.screenCache.misses} count
+ * screens shown from the cache and built anew.
+ */
+public class SceneCache {
+    public static final String STYLESHEET = SceneCache.class.getResource("/App/coffee_style.css").toExternalForm();
+
+    /** A cached screen: its scene, and what to refresh each time it is shown again. */
+    public static class Screen {
+        private final Scene scene;
+        private final Runnable onReshow;
+
+        public Screen(Scene scene, Runnable onReshow) {
+            this.scene = scene;
+            this.onReshow = onReshow;
+        }
+
+        public Scene getScene() {
+            return scene;
+        }
+    }
+
+    private final int maxScreens;
+    private final Map<String, Screen> screens = new LinkedHashMap<>(16, 0.75f, true);
+    private final Set<String> pinned = new HashSet<>();
+    private final MetricsRegistry.Counter hits;
+    private final MetricsRegistry.Counter misses;
+    private Scene stylesheetAnchor;
+
+    public SceneCache(int maxScreens, MetricsRegistry metrics) {
+        this.maxScreens = maxScreens;
+        this.hits = metrics.counter("ui.screenCache.hits");
+        this.misses = metrics.counter("ui.screenCache.misses");
+    }
+
+    /** A scene styled with the app stylesheet. */
+    public Scene newScene(Parent root, double width, double height) {
+        if (stylesheetAnchor == null) {
+            // JavaFX drops a parsed stylesheet once no scene in a window uses it, and parses it again for
+            // the next scene. This scene is never shown, so it keeps coffee_style.css parsed for the app's life.
+            stylesheetAnchor = new Scene(new Group());
+            stylesheetAnchor.getStylesheets().add(STYLESHEET);
+            stylesheetAnchor.getRoot().applyCss();
+        }
+        Scene scene = new Scene(root, width, height);
+        scene.getStylesheets().add(STYLESHEET);
+        return scene;
+    }
+
+    /**
+     * Shows the screen cached under {@code key} in {@code stage}, refreshing
+     * its data, or builds it if it is not cached.
+     */
+    public void show(Stage stage, String key, String title, Supplier<Screen> build) {
+        Screen screen = screens.get(key);
+        if (screen == null) {
+            misses.increment();
+            screen = build.get();
+            screens.put(key, screen);
+            evict();
+        } else {
+            hits.increment();
+            if (screen.onReshow != null) {
+                screen.onReshow.run();
+            }
+        }
+        stage.setScene(screen.scene);
+        stage.setTitle(title);
+        stage.show();
+    }
+
+    /** Never evicts the screen cached under {@code key}, e.g. the one navigated back to most. */
+    public void pin(String key) {
+        pinned.add(key);
+    }
+
+    private void evict() {
+        int unpinned = 0;
+        for (String key : screens.keySet()) {
+            if (!pinned.contains(key)) {
+                unpinned++;
+            }
+        }
+        // Least recently shown first
+        Iterator<String> it = screens.keySet().iterator();
+        while (unpinned > maxScreens && it.hasNext()) {
+            if (!pinned.contains(it.next())) {
+                it.remove();
+                unpinned--;
+            }
+        }
+    }
+}
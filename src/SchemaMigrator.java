@@ -0,0 +1,160 @@
+package App;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Brings the database schema up to date by running the numbered scripts in
+ * {@code sql/migrations} ({@code V<n>__<description>.sql}) that are newer than
+ * the version recorded in {@code schema_version}. A database created before
+ * versioning existed has no {@code schema_version} table and is treated as
+ * version 1, the original {@code create_tables.sql}.
+ *
+ * MySQL commits DDL implicitly, so a script that fails halfway is not rolled
+ * back; its version is only recorded once every statement has succeeded.
+ */
+public class SchemaMigrator {
+    private static final Logger LOGGER = Logger.getLogger(SchemaMigrator.class.getName());
+
+    private static final Pattern SCRIPT_NAME = Pattern.compile("V(\\d+)__(.+)\\.sql");
+    private static final int BASELINE_VERSION = 1;
+
+    private final Connection connection;
+    private final Path migrationsDir;
+
+    public SchemaMigrator(Connection connection, Path migrationsDir) {
+        this.connection = connection;
+        this.migrationsDir = migrationsDir;
+    }
+
+    /**
+     * Applies all pending migrations in version order.
+     *
+     * @return the schema version after migrating
+     */
+    public int migrate() throws SQLException {
+        int current = currentVersion();
+        for (var entry : findScripts().entrySet()) {
+            int version = entry.getKey();
+            if (version <= current)
+                continue;
+            Path script = entry.getValue();
+            long start = System.nanoTime();
+            for (String sql : splitStatements(readScript(script))) {
+                try (Statement st = connection.createStatement()) {
+                    st.execute(sql);
+                }
+            }
+            recordVersion(version, describe(script));
+            current = version;
+            LOGGER.info(String.format("Applied schema migration %s in %d ms",
+                    script.getFileName(), (System.nanoTime() - start) / 1_000_000));
+        }
+        return current;
+    }
+
+    private int currentVersion() throws SQLException {
+        if (!hasVersionTable()) {
+            try (Statement st = connection.createStatement()) {
+                st.execute("CREATE TABLE schema_version (" +
+                        "version INT PRIMARY KEY, " +
+                        "description VARCHAR(200) NOT NULL, " +
+                        "applied_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP)");
+            }
+            recordVersion(BASELINE_VERSION, "baseline");
+            return BASELINE_VERSION;
+        }
+        try (Statement st = connection.createStatement();
+                ResultSet rs = st.executeQuery("SELECT MAX(version) FROM schema_version")) {
+            return rs.next() ? rs.getInt(1) : BASELINE_VERSION;
+        }
+    }
+
+    private boolean hasVersionTable() throws SQLException {
+        DatabaseMetaData meta = connection.getMetaData();
+        for (String name : new String[] { "schema_version", "SCHEMA_VERSION" }) {
+            try (ResultSet rs = meta.getTables(connection.getCatalog(), null, name, new String[] { "TABLE" })) {
+                if (rs.next()) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private void recordVersion(int version, String description) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement(
+                "INSERT INTO schema_version (version, description) VALUES (?, ?)")) {
+            ps.setInt(1, version);
+            ps.setString(2, description);
+            ps.executeUpdate();
+        }
+    }
+
+    private static String readScript(Path script) throws SQLException {
+        try {
+            return Files.readString(script, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new SQLException("Cannot read migration " + script, e);
+        }
+    }
+
+    private TreeMap<Integer, Path> findScripts() throws SQLException {
+        TreeMap<Integer, Path> scripts = new TreeMap<>();
+        if (!Files.isDirectory(migrationsDir)) {
+            LOGGER.warning("Migrations directory not found: " + migrationsDir.toAbsolutePath());
+            return scripts;
+        }
+        try (var files = Files.list(migrationsDir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Matcher m = SCRIPT_NAME.matcher(file.getFileName().toString());
+                if (m.matches()) {
+                    scripts.put(Integer.parseInt(m.group(1)), file);
+                }
+            }
+        } catch (IOException e) {
+            throw new SQLException("Cannot list migrations in " + migrationsDir, e);
+        }
+        return scripts;
+    }
+
+    private static String describe(Path script) {
+        Matcher m = SCRIPT_NAME.matcher(script.getFileName().toString());
+        return m.matches() ? m.group(2).replace('_', ' ') : script.getFileName().toString();
+    }
+
+    /** Splits a script on semicolons that end a line, dropping "--" comment lines. */
+    public static List<String> splitStatements(String script) {
+        List<String> statements = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        for (String line : script.split("\\R")) {
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("--"))
+                continue;
+            current.append(line).append('\n');
+            if (trimmed.endsWith(";")) {
+                String sql = current.toString().trim();
+                statements.add(sql.substring(0, sql.length() - 1));
+                current.setLength(0);
+            }
+        }
+        if (!current.toString().isBlank()) {
+            statements.add(current.toString().trim());
+        }
+        return statements;
+    }
+}
@@ -0,0 +1,84 @@
+package App;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.RuntimeMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Milestones of a cold start, in milliseconds since the JVM started, so the
+ * JVM's own startup (class loading, CDS or not) is included. Each milestone
+ * is published as a {@code startup.<milestone>Millis} gauge, -1 until it is
+ * reached. On the first sale, one line with all of them is appended to
+ * {@code <dir>/startup-<register>.log}, so time to first sale can be compared
+ * across releases and machines.
+ */
+public final class StartupTimeline {
+    private static final Logger LOGGER = Logger.getLogger(StartupTimeline.class.getName());
+    private static final DateTimeFormatter LINE_TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    public static final String LOGIN_SHOWN = "loginShown";
+    public static final String DB_CONNECTED = "dbConnected";
+    public static final String CATALOG_LOADED = "catalogLoaded";
+    public static final String LOGGED_IN = "loggedIn";
+    public static final String ORDER_SCREEN_SHOWN = "orderScreenShown";
+    public static final String FIRST_SALE = "firstSale";
+    private static final String[] MILESTONES = {
+            LOGIN_SHOWN, DB_CONNECTED, CATALOG_LOADED, LOGGED_IN, ORDER_SCREEN_SHOWN, FIRST_SALE };
+
+    private final RuntimeMXBean runtime = ManagementFactory.getRuntimeMXBean();
+    private final String register;
+    private final Path dir;
+    private final Map<String, Long> reached = new ConcurrentHashMap<>();
+
+    public StartupTimeline(MetricsRegistry metrics, String register, Path dir) {
+        this.register = register;
+        this.dir = dir;
+        for (String milestone : MILESTONES) {
+            metrics.gauge("startup." + milestone + "Millis", () -> get(milestone));
+        }
+    }
+
+    /** Records {@code milestone} as reached now, unless it was reached before. */
+    public void mark(String milestone) {
+        if (reached.putIfAbsent(milestone, runtime.getUptime()) != null)
+            return;
+        LOGGER.info("Startup: " + milestone + " after " + reached.get(milestone) + " ms");
+        if (FIRST_SALE.equals(milestone)) {
+            writeSummary();
+        }
+    }
+
+    /** Milliseconds from JVM start to {@code milestone}, or -1 if not reached yet. */
+    public long get(String milestone) {
+        return reached.getOrDefault(milestone, -1L);
+    }
+
+    private void writeSummary() {
+        StringBuilder line = new StringBuilder();
+        line.append(LocalDateTime.now().format(LINE_TIME)).append(" register=").append(register)
+                .append(" java=").append(runtime.getVmVersion())
+                .append(" cds=").append(runtime.getInputArguments().stream()
+                        .anyMatch(arg -> arg.startsWith("-XX:SharedArchiveFile")) ? "app" : "default");
+        for (String milestone : MILESTONES) {
+            line.append(' ').append(milestone).append('=').append(get(milestone));
+        }
+        line.append(System.lineSeparator());
+        try {
+            Files.createDirectories(dir);
+            Path file = dir.resolve("startup-" + register.replaceAll("[^A-Za-z0-9._-]", "_") + ".log");
+            Files.writeString(file, line, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to write startup times to " + dir, e);
+        }
+    }
+}
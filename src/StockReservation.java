@@ -0,0 +1,35 @@
+package App;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Stock held by one cart, per product id. Adding an item only reserves
+ * locally; the reserved quantities are flushed to the database as relative
+ * decrements when the order is checked out, and handed back if the order is
+ * cancelled or abandoned. Not thread-safe on its own; {@link Cart} guards it.
+ */
+public class StockReservation {
+    private final Map<Integer, Integer> reserved = new LinkedHashMap<>();
+    private long lastActivityMillis = System.currentTimeMillis();
+
+    public void reserve(int productId, int quantity) {
+        reserved.merge(productId, quantity, Integer::sum);
+        lastActivityMillis = System.currentTimeMillis();
+    }
+
+    /** Reserved quantities keyed by product id; the view is read-only. */
+    public Map<Integer, Integer> getReserved() {
+        return Collections.unmodifiableMap(reserved);
+    }
+
+    public long getIdleMillis() {
+        return System.currentTimeMillis() - lastActivityMillis;
+    }
+
+    public void clear() {
+        reserved.clear();
+        lastActivityMillis = System.currentTimeMillis();
+    }
+}
@@ -0,0 +1,16 @@
+package App;
+
+public enum Variant {
+    HOT("Hot"),
+    COLD("Cold");
+
+    private final String label;
+
+    Variant(String label) {
+        this.label = label;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+}